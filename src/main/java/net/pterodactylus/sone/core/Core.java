@@ -19,12 +19,15 @@ package net.pterodactylus.sone.core;
 
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,6 +36,7 @@ import net.pterodactylus.sone.core.Options.Option;
 import net.pterodactylus.sone.core.Options.OptionWatcher;
 import net.pterodactylus.sone.data.Client;
 import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostPage;
 import net.pterodactylus.sone.data.Profile;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
@@ -95,6 +99,9 @@ public class Core implements IdentityListener {
 	/** The Sone downloader. */
 	private final SoneDownloader soneDownloader;
 
+	/** The insert scheduler. */
+	private final InsertScheduler insertScheduler;
+
 	/** Whether the core has been stopped. */
 	private volatile boolean stopped;
 
@@ -106,6 +113,19 @@ public class Core implements IdentityListener {
 	/* synchronize on itself. */
 	private final Set<Sone> lockedSones = new HashSet<Sone>();
 
+	/** The time this core was created, identifying its change sequence. */
+	private final long changeSequenceEpoch = System.currentTimeMillis();
+
+	/** The current change sequence number. */
+	private final AtomicLong changeSequence = new AtomicLong();
+
+	/** Object to wait on for changes. */
+	private final Object changeSyncObject = new Object();
+
+	/** The change sequence numbers of the last change of every Sone. */
+	/* synchronize access on itself. */
+	private final Map<Sone, Long> soneChangeSequences = new HashMap<Sone, Long>();
+
 	/** Sone inserters. */
 	/* synchronize access on this on localSones. */
 	private final Map<Sone, SoneInserter> soneInserters = new HashMap<Sone, SoneInserter>();
@@ -159,6 +179,7 @@ public class Core implements IdentityListener {
 		this.freenetInterface = freenetInterface;
 		this.identityManager = identityManager;
 		this.soneDownloader = new SoneDownloader(this, freenetInterface);
+		this.insertScheduler = new InsertScheduler(this);
 	}
 
 	//
@@ -210,6 +231,15 @@ public class Core implements IdentityListener {
 		return options;
 	}
 
+	/**
+	 * Returns the insert scheduler that inserts the local Sones.
+	 *
+	 * @return The insert scheduler
+	 */
+	public InsertScheduler getInsertScheduler() {
+		return insertScheduler;
+	}
+
 	/**
 	 * Returns whether the “Sone rescue mode” is currently activated.
 	 *
@@ -254,6 +284,47 @@ public class Core implements IdentityListener {
 		synchronized (soneStatuses) {
 			soneStatuses.put(sone, soneStatus);
 		}
+		touchSone(sone);
+	}
+
+	/**
+	 * Returns the current change sequence number. Every change that is
+	 * visible in the web interface, e.g. the status of a Sone, increases the
+	 * change sequence number.
+	 *
+	 * @return The current change sequence number
+	 */
+	public long getChangeSequence() {
+		return changeSequence.get();
+	}
+
+	/**
+	 * Returns the epoch of the change sequence. The change sequence starts at
+	 * 0 again every time the plugin is started, so change sequence numbers can
+	 * only be compared if their epochs are the same.
+	 *
+	 * @see #getChangeSequence()
+	 * @return The epoch of the change sequence
+	 */
+	public long getChangeSequenceEpoch() {
+		return changeSequenceEpoch;
+	}
+
+	/**
+	 * Returns the change sequence number of the last change of the given
+	 * Sone’s status.
+	 *
+	 * @see #getChangeSequence()
+	 * @param sone
+	 *            The Sone to get the change sequence number for
+	 * @return The change sequence number of the last change of the Sone, or
+	 *         {@code 0} if the Sone has not been changed
+	 */
+	public long getSoneChangeSequence(Sone sone) {
+		synchronized (soneChangeSequences) {
+			Long soneChangeSequence = soneChangeSequences.get(sone);
+			return (soneChangeSequence == null) ? 0 : soneChangeSequence;
+		}
 	}
 
 	/**
@@ -626,6 +697,32 @@ public class Core implements IdentityListener {
 		return replies;
 	}
 
+	/**
+	 * Returns all replies to the given posts, sorted by time, oldest first.
+	 * The replies of all Sones are only scanned once, regardless of the number
+	 * of posts.
+	 *
+	 * @param posts
+	 *            The posts to get the replies for
+	 * @return All replies to the given posts
+	 */
+	public List<Reply> getReplies(Collection<Post> posts) {
+		Set<Post> postSet = new HashSet<Post>(posts);
+		List<Reply> replies = new ArrayList<Reply>();
+		if (postSet.isEmpty()) {
+			return replies;
+		}
+		for (Sone sone : getSones()) {
+			for (Reply reply : sone.getReplies()) {
+				if (postSet.contains(reply.getPost())) {
+					replies.add(reply);
+				}
+			}
+		}
+		Collections.sort(replies, Reply.TIME_COMPARATOR);
+		return replies;
+	}
+
 	/**
 	 * Returns whether the reply with the given ID is new.
 	 *
@@ -696,13 +793,62 @@ public class Core implements IdentityListener {
 		return sones;
 	}
 
+	/**
+	 * Returns a single page of the posts of the given Sones, sorted by time,
+	 * newest first. The posts of every Sone are already sorted, so they are
+	 * merged using a heap that contains the next post of every Sone; only the
+	 * posts up to the end of the requested page are ever looked at.
+	 *
+	 * @param sones
+	 *            The Sones whose posts to return
+	 * @param page
+	 *            The index of the page (starting at {@code 0}); if it is out
+	 *            of range, the nearest valid page is returned
+	 * @param pageSize
+	 *            The number of posts per page
+	 * @return The requested page of posts
+	 */
+	public PostPage getPostPage(Collection<Sone> sones, int page, int pageSize) {
+		List<List<Post>> postLists = new ArrayList<List<Post>>(sones.size());
+		int postCount = 0;
+		for (Sone sone : sones) {
+			List<Post> posts = sone.getPosts();
+			if (!posts.isEmpty()) {
+				postLists.add(posts);
+				postCount += posts.size();
+			}
+		}
+		int pageIndex = Math.max(0, Math.min(page, PostPage.getPageCount(postCount, pageSize) - 1));
+		int firstPost = pageIndex * pageSize;
+		int lastPost = Math.min(postCount, firstPost + pageSize);
+		List<Post> pagePosts = new ArrayList<Post>(lastPost - firstPost);
+		if (postLists.size() == 1) {
+			pagePosts.addAll(postLists.get(0).subList(firstPost, lastPost));
+			return new PostPage(pagePosts, pageIndex, pageSize, postCount);
+		}
+		PriorityQueue<PostCursor> cursors = new PriorityQueue<PostCursor>(Math.max(1, postLists.size()));
+		for (List<Post> posts : postLists) {
+			cursors.add(new PostCursor(posts));
+		}
+		for (int postIndex = 0; postIndex < lastPost; ++postIndex) {
+			PostCursor cursor = cursors.poll();
+			if (postIndex >= firstPost) {
+				pagePosts.add(cursor.getPost());
+			}
+			if (cursor.next()) {
+				cursors.add(cursor);
+			}
+		}
+		return new PostPage(pagePosts, pageIndex, pageSize, postCount);
+	}
+
 	//
 	// ACTIONS
 	//
 
 	/**
-	 * Locks the given Sone. A locked Sone will not be inserted by
-	 * {@link SoneInserter} until it is {@link #unlockSone(Sone) unlocked}
+	 * Locks the given Sone. A locked Sone will not be inserted by the
+	 * {@link InsertScheduler} until it is {@link #unlockSone(Sone) unlocked}
 	 * again.
 	 *
 	 * @param sone
@@ -714,6 +860,8 @@ public class Core implements IdentityListener {
 				coreListenerManager.fireSoneLocked(sone);
 			}
 		}
+		touchSone(sone);
+		insertScheduler.soneModified(sone);
 	}
 
 	/**
@@ -729,6 +877,8 @@ public class Core implements IdentityListener {
 				coreListenerManager.fireSoneUnlocked(sone);
 			}
 		}
+		touchSone(sone);
+		insertScheduler.soneModified(sone);
 	}
 
 	/**
@@ -783,7 +933,7 @@ public class Core implements IdentityListener {
 			setSoneStatus(sone, SoneStatus.idle);
 			loadSone(sone);
 			if (!isSoneRescueMode()) {
-				soneInserter.start();
+				insertScheduler.addSoneInserter(soneInserter);
 			}
 			new Thread(new Runnable() {
 
@@ -806,7 +956,7 @@ public class Core implements IdentityListener {
 					logger.log(Level.INFO, "Finished restoring Sone from Freenet, starting Inserter…");
 					saveSone(sone);
 					coreListenerManager.fireRescuedSone(sone);
-					soneInserter.start();
+					insertScheduler.addSoneInserter(soneInserter);
 				}
 
 			}, "Sone Downloader").start();
@@ -952,13 +1102,15 @@ public class Core implements IdentityListener {
 				}
 				storedSone.setLatestEdition(sone.getLatestEdition());
 			}
+			insertScheduler.soneModified(storedSone);
+			touchSone(storedSone);
 		}
 	}
 
 	/**
 	 * Deletes the given Sone. This will remove the Sone from the
-	 * {@link #getLocalSone(String) local Sones}, stops its {@link SoneInserter}
-	 * and remove the context from its identity.
+	 * {@link #getLocalSone(String) local Sones}, removes it from the
+	 * {@link InsertScheduler} and remove the context from its identity.
 	 *
 	 * @param sone
 	 *            The Sone to delete
@@ -974,7 +1126,11 @@ public class Core implements IdentityListener {
 				return;
 			}
 			localSones.remove(sone.getId());
-			soneInserters.remove(sone).stop();
+			soneInserters.remove(sone);
+			insertScheduler.removeSone(sone);
+		}
+		synchronized (soneChangeSequences) {
+			soneChangeSequences.remove(sone);
 		}
 		identityManager.removeContext((OwnIdentity) sone.getIdentity(), "Sone");
 		identityManager.removeProperty((OwnIdentity) sone.getIdentity(), "Sone.LatestEdition");
@@ -1116,12 +1272,26 @@ public class Core implements IdentityListener {
 
 	/**
 	 * Saves the given Sone. This will persist all local settings for the given
-	 * Sone, such as the friends list and similar, private options.
+	 * Sone, such as the friends list and similar, private options. As all
+	 * modifications of a local Sone end up here, this will also notify the
+	 * {@link InsertScheduler} about the (potential) modification.
 	 *
 	 * @param sone
 	 *            The Sone to save
 	 */
-	public synchronized void saveSone(Sone sone) {
+	public void saveSone(Sone sone) {
+		storeSone(sone);
+		insertScheduler.soneModified(sone);
+		touchSone(sone);
+	}
+
+	/**
+	 * Persists all local settings for the given Sone into the configuration.
+	 *
+	 * @param sone
+	 *            The Sone to store
+	 */
+	private synchronized void storeSone(Sone sone) {
 		if (!isLocalSone(sone)) {
 			logger.log(Level.FINE, "Tried to save non-local Sone: %s", sone);
 			return;
@@ -1390,24 +1560,120 @@ public class Core implements IdentityListener {
 		}
 	}
 
+	/**
+	 * Marks the given posts and replies as known. In contrast to
+	 * {@link #markPostKnown(Post)} and {@link #markReplyKnown(Reply)}, the
+	 * locks for the new posts and replies are only acquired once, and only a
+	 * single event containing all posts and replies that were actually new is
+	 * fired.
+	 *
+	 * @param posts
+	 *            The posts to mark as known
+	 * @param replies
+	 *            The replies to mark as known
+	 */
+	public void markKnown(Collection<Post> posts, Collection<Reply> replies) {
+		List<Post> knownPosts = new ArrayList<Post>();
+		synchronized (newPosts) {
+			for (Post post : posts) {
+				if (newPosts.remove(post.getId())) {
+					this.knownPosts.add(post.getId());
+					knownPosts.add(post);
+				}
+			}
+		}
+		List<Reply> knownReplies = new ArrayList<Reply>();
+		synchronized (newReplies) {
+			for (Reply reply : replies) {
+				if (newReplies.remove(reply.getId())) {
+					this.knownReplies.add(reply.getId());
+					knownReplies.add(reply);
+				}
+			}
+		}
+		if (!knownPosts.isEmpty() || !knownReplies.isEmpty()) {
+			coreListenerManager.fireMarkKnown(knownPosts, knownReplies);
+		}
+	}
+
+	/**
+	 * Increases the change sequence number.
+	 *
+	 * @see #getChangeSequence()
+	 * @return The new change sequence number
+	 */
+	public long nextChangeSequence() {
+		long nextChangeSequence = changeSequence.incrementAndGet();
+		synchronized (changeSyncObject) {
+			changeSyncObject.notifyAll();
+		}
+		return nextChangeSequence;
+	}
+
+	/**
+	 * Waits until the change sequence number is larger than the given change
+	 * sequence number, the given time has passed, or the core is stopped. All
+	 * waiting threads wait on the same monitor which is notified whenever the
+	 * change sequence number is increased.
+	 *
+	 * @see #getChangeSequence()
+	 * @param changeSequence
+	 *            The change sequence number to wait for changes after
+	 * @param timeout
+	 *            The maximum time to wait (in milliseconds)
+	 * @return {@code true} if a change has occured, {@code false} if the time
+	 *         has passed or the core was stopped
+	 */
+	public boolean waitForChange(long changeSequence, long timeout) {
+		long endTime = System.currentTimeMillis() + timeout;
+		synchronized (changeSyncObject) {
+			while (this.changeSequence.get() <= changeSequence) {
+				long remainingTime = endTime - System.currentTimeMillis();
+				if (stopped || (remainingTime <= 0)) {
+					return false;
+				}
+				try {
+					changeSyncObject.wait(remainingTime);
+				} catch (InterruptedException ie1) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Records that the status of the given Sone has changed, assigning it a
+	 * new change sequence number.
+	 *
+	 * @see #getSoneChangeSequence(Sone)
+	 * @param sone
+	 *            The Sone that has changed
+	 */
+	void touchSone(Sone sone) {
+		synchronized (soneChangeSequences) {
+			soneChangeSequences.put(sone, nextChangeSequence());
+		}
+	}
+
 	/**
 	 * Starts the core.
 	 */
 	public void start() {
 		loadConfiguration();
+		insertScheduler.start();
 	}
 
 	/**
 	 * Stops the core.
 	 */
 	public void stop() {
-		synchronized (localSones) {
-			for (SoneInserter soneInserter : soneInserters.values()) {
-				soneInserter.stop();
-			}
-		}
+		insertScheduler.stop();
 		saveConfiguration();
 		stopped = true;
+		synchronized (changeSyncObject) {
+			changeSyncObject.notifyAll();
+		}
 	}
 
 	/**
@@ -1417,6 +1683,11 @@ public class Core implements IdentityListener {
 		/* store the options first. */
 		try {
 			configuration.getIntValue("Option/InsertionDelay").setValue(options.getIntegerOption("InsertionDelay").getReal());
+			configuration.getIntValue("Option/InsertConcurrency").setValue(options.getIntegerOption("InsertConcurrency").getReal());
+			configuration.getIntValue("Option/InsertBandwidth").setValue(options.getIntegerOption("InsertBandwidth").getReal());
+			configuration.getIntValue("Option/MinimumPollInterval").setValue(options.getIntegerOption("MinimumPollInterval").getReal());
+			configuration.getIntValue("Option/MaximumPollInterval").setValue(options.getIntegerOption("MaximumPollInterval").getReal());
+			configuration.getIntValue("Option/WebOfTrustRequestTimeout").setValue(options.getIntegerOption("WebOfTrustRequestTimeout").getReal());
 			configuration.getBooleanValue("Option/SoneRescueMode").setValue(options.getBooleanOption("SoneRescueMode").getReal());
 			configuration.getBooleanValue("Option/ClearOnNextRestart").setValue(options.getBooleanOption("ClearOnNextRestart").getReal());
 			configuration.getBooleanValue("Option/ReallyClearOnNextRestart").setValue(options.getBooleanOption("ReallyClearOnNextRestart").getReal());
@@ -1469,8 +1740,54 @@ public class Core implements IdentityListener {
 		options.addIntegerOption("InsertionDelay", new DefaultOption<Integer>(60, new OptionWatcher<Integer>() {
 
 			@Override
+			@SuppressWarnings("synthetic-access")
+			public void optionChanged(Option<Integer> option, Integer oldValue, Integer newValue) {
+				insertScheduler.setInsertionDelay(newValue);
+			}
+
+		}));
+		options.addIntegerOption("InsertConcurrency", new DefaultOption<Integer>(2, new OptionWatcher<Integer>() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void optionChanged(Option<Integer> option, Integer oldValue, Integer newValue) {
+				insertScheduler.setMaxConcurrentInserts(newValue);
+			}
+
+		}));
+		options.addIntegerOption("InsertBandwidth", new DefaultOption<Integer>(0, new OptionWatcher<Integer>() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void optionChanged(Option<Integer> option, Integer oldValue, Integer newValue) {
+				insertScheduler.setInsertBandwidth(newValue);
+			}
+
+		}));
+		options.addIntegerOption("MinimumPollInterval", new DefaultOption<Integer>(60, new OptionWatcher<Integer>() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void optionChanged(Option<Integer> option, Integer oldValue, Integer newValue) {
+				identityManager.setMinimumPollInterval(newValue);
+			}
+
+		}));
+		options.addIntegerOption("MaximumPollInterval", new DefaultOption<Integer>(600, new OptionWatcher<Integer>() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void optionChanged(Option<Integer> option, Integer oldValue, Integer newValue) {
+				identityManager.setMaximumPollInterval(newValue);
+			}
+
+		}));
+		options.addIntegerOption("WebOfTrustRequestTimeout", new DefaultOption<Integer>(60, new OptionWatcher<Integer>() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
 			public void optionChanged(Option<Integer> option, Integer oldValue, Integer newValue) {
-				SoneInserter.setInsertionDelay(newValue);
+				identityManager.setRequestTimeout(newValue);
 			}
 
 		}));
@@ -1490,6 +1807,11 @@ public class Core implements IdentityListener {
 		}
 
 		options.getIntegerOption("InsertionDelay").set(configuration.getIntValue("Option/InsertionDelay").getValue(null));
+		options.getIntegerOption("InsertConcurrency").set(configuration.getIntValue("Option/InsertConcurrency").getValue(null));
+		options.getIntegerOption("InsertBandwidth").set(configuration.getIntValue("Option/InsertBandwidth").getValue(null));
+		options.getIntegerOption("MinimumPollInterval").set(configuration.getIntValue("Option/MinimumPollInterval").getValue(null));
+		options.getIntegerOption("MaximumPollInterval").set(configuration.getIntValue("Option/MaximumPollInterval").getValue(null));
+		options.getIntegerOption("WebOfTrustRequestTimeout").set(configuration.getIntValue("Option/WebOfTrustRequestTimeout").getValue(null));
 		options.getBooleanOption("SoneRescueMode").set(configuration.getBooleanValue("Option/SoneRescueMode").getValue(null));
 
 		/* load known Sones. */
@@ -1583,13 +1905,26 @@ public class Core implements IdentityListener {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void identityUpdated(final Identity identity) {
+	public void identityUpdated(Identity identity, Set<String> changedContexts, Set<String> changedProperties) {
+		final Sone sone = getRemoteSone(identity.getId(), false);
+		if (sone == null) {
+			return;
+		}
+		sone.setIdentity(identity);
+		touchSone(sone);
+		if (!changedProperties.contains("Sone.LatestEdition")) {
+			return;
+		}
+		long latestEdition = Numbers.safeParseLong(identity.getProperty("Sone.LatestEdition"), (long) 0);
+		if (latestEdition <= sone.getLatestEdition()) {
+			logger.log(Level.FINEST, "Ignoring edition %d of %s, already know edition %d.", new Object[] { latestEdition, sone, sone.getLatestEdition() });
+			return;
+		}
 		new Thread(new Runnable() {
 
 			@Override
 			@SuppressWarnings("synthetic-access")
 			public void run() {
-				Sone sone = getRemoteSone(identity.getId());
 				soneDownloader.fetchSone(sone);
 			}
 		}).start();
@@ -1603,4 +1938,57 @@ public class Core implements IdentityListener {
 		/* TODO */
 	}
 
+	/**
+	 * Points to the next post of a list of posts that is sorted by time.
+	 *
+	 * @see Core#getPostPage(Collection, int, int)
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class PostCursor implements Comparable<PostCursor> {
+
+		/** The posts. */
+		private final List<Post> posts;
+
+		/** The index of the current post. */
+		private int index;
+
+		/**
+		 * Creates a new cursor that points to the first of the given posts.
+		 *
+		 * @param posts
+		 *            The posts (must not be empty)
+		 */
+		public PostCursor(List<Post> posts) {
+			this.posts = posts;
+		}
+
+		/**
+		 * Returns the current post.
+		 *
+		 * @return The current post
+		 */
+		public Post getPost() {
+			return posts.get(index);
+		}
+
+		/**
+		 * Moves this cursor to the next post.
+		 *
+		 * @return {@code true} if there is a next post, {@code false} if all
+		 *         posts have been returned
+		 */
+		public boolean next() {
+			return ++index < posts.size();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int compareTo(PostCursor postCursor) {
+			return Post.TIME_COMPARATOR.compare(getPost(), postCursor.getPost());
+		}
+
+	}
+
 }
@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.core;
 
+import java.util.Collection;
 import java.util.EventListener;
 
 import net.pterodactylus.sone.data.Post;
@@ -95,6 +96,17 @@ public interface CoreListener extends EventListener {
 	 */
 	public void markReplyKnown(Reply reply);
 
+	/**
+	 * Notifies a listener that the given posts and replies are now marked as
+	 * known.
+	 *
+	 * @param posts
+	 *            The known posts
+	 * @param replies
+	 *            The known replies
+	 */
+	public void markKnown(Collection<Post> posts, Collection<Reply> replies);
+
 	/**
 	 * Notifies a listener that the given post was removed.
 	 *
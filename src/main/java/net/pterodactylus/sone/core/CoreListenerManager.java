@@ -17,6 +17,8 @@
 
 package net.pterodactylus.sone.core;
 
+import java.util.Collection;
+
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
@@ -145,6 +147,21 @@ public class CoreListenerManager extends AbstractListenerManager<Core, CoreListe
 		}
 	}
 
+	/**
+	 * Notifies all listeners that the given posts and replies are now marked
+	 * as known.
+	 *
+	 * @param posts
+	 *            The known posts
+	 * @param replies
+	 *            The known replies
+	 */
+	void fireMarkKnown(Collection<Post> posts, Collection<Reply> replies) {
+		for (CoreListener coreListener : getListeners()) {
+			coreListener.markKnown(posts, replies);
+		}
+	}
+
 	/**
 	 * Notifies all listener that the given post was removed.
 	 *
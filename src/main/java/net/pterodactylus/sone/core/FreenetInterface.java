@@ -30,9 +30,11 @@ import net.pterodactylus.util.logging.Logging;
 import com.db4o.ObjectContainer;
 
 import freenet.client.FetchException;
+import freenet.client.ClientMetadata;
 import freenet.client.FetchResult;
 import freenet.client.HighLevelSimpleClient;
 import freenet.client.HighLevelSimpleClientImpl;
+import freenet.client.InsertBlock;
 import freenet.client.InsertException;
 import freenet.client.async.ClientContext;
 import freenet.client.async.USKCallback;
@@ -40,6 +42,7 @@ import freenet.keys.FreenetURI;
 import freenet.keys.USK;
 import freenet.node.Node;
 import freenet.node.RequestStarter;
+import freenet.support.api.Bucket;
 
 /**
  * Contains all necessary functionality for interacting with the Freenet node.
@@ -112,6 +115,27 @@ public class FreenetInterface {
 		return new String[] { keyPair[1].toString(), keyPair[0].toString() };
 	}
 
+	/**
+	 * Inserts the given data into Freenet under a CHK.
+	 *
+	 * @param data
+	 *            The data to insert
+	 * @param contentType
+	 *            The content type of the data
+	 * @param filenameHint
+	 *            The name of the file, used as a hint by the node
+	 * @return The CHK of the inserted data
+	 * @throws SoneException
+	 *             if an insert error occurs
+	 */
+	public FreenetURI insertFile(Bucket data, String contentType, String filenameHint) throws SoneException {
+		try {
+			return client.insert(new InsertBlock(data, new ClientMetadata(contentType), FreenetURI.EMPTY_CHK_URI), false, filenameHint);
+		} catch (InsertException ie1) {
+			throw new SoneException(null, ie1);
+		}
+	}
+
 	/**
 	 * Inserts a directory into Freenet.
 	 *
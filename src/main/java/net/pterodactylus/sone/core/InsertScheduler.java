@@ -0,0 +1,574 @@
+/*
+ * Sone - InsertScheduler.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.util.logging.Logging;
+import net.pterodactylus.util.service.AbstractService;
+
+/**
+ * The insert scheduler is responsible for inserting all local Sones. Instead
+ * of polling every Sone for modifications it is notified by the {@link Core}
+ * whenever a Sone has been modified, remembers the time at which the Sone
+ * should be inserted (as determined by the insertion delay) and hands the
+ * insert to an insert thread once that time has come.
+ * <p>
+ * The inserts of all local Sones share a single queue. Due inserts are
+ * started in the order they became due, so that a Sone that is modified
+ * constantly cannot starve the other Sones. The number of concurrently
+ * running inserts and the bandwidth used by inserts can be limited.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class InsertScheduler extends AbstractService {
+
+	/** The logger. */
+	private static final Logger logger = Logging.getLogger(InsertScheduler.class);
+
+	/** The core. */
+	private final Core core;
+
+	/** The insertion delay (in seconds). */
+	private volatile int insertionDelay = 60;
+
+	/** Object used to synchronize access to the insert limits. */
+	private final Object insertLimits = new Object();
+
+	/** The maximum number of concurrently running inserts. */
+	/* synchronize access on insertLimits. */
+	private int maxConcurrentInserts = 2;
+
+	/** The bandwidth available for inserts (in bytes per second, 0 = unlimited). */
+	/* synchronize access on insertLimits. */
+	private long insertBandwidth = 0;
+
+	/** The number of currently running inserts. */
+	/* synchronize access on insertLimits. */
+	private int runningInserts;
+
+	/** The earliest time the bandwidth budget allows the next insert to start. */
+	/* synchronize access on insertLimits. */
+	private long nextInsertTime;
+
+	/** The number of inserts that have been started. */
+	/* synchronize access on insertLimits. */
+	private long startedInserts;
+
+	/** The total time inserts had to wait after they were due (in milliseconds). */
+	/* synchronize access on insertLimits. */
+	private long totalWaitTime;
+
+	/** The Sone inserters of all local Sones. */
+	/* synchronize access on itself. */
+	private final Map<Sone, SoneInserter> soneInserters = new HashMap<Sone, SoneInserter>();
+
+	/** The currently scheduled inserts, by Sone. */
+	/* synchronize access on soneInserters. */
+	private final Map<Sone, ScheduledInsert> scheduledInserts = new HashMap<Sone, ScheduledInsert>();
+
+	/** The queue of scheduled inserts, ordered by the time they are due. */
+	private final DelayQueue<ScheduledInsert> insertQueue = new DelayQueue<ScheduledInsert>();
+
+	/** The executor that performs the inserts. */
+	private final ExecutorService insertExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			return new Thread(runnable, "Sone Inserter");
+		}
+	});
+
+	/**
+	 * Creates a new insert scheduler.
+	 *
+	 * @param core
+	 *            The core
+	 */
+	public InsertScheduler(Core core) {
+		super("Sone Insert Scheduler", false);
+		this.core = core;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Changes the insertion delay, i.e. the time the insert scheduler waits
+	 * after it has noticed a Sone modification before it starts the insert.
+	 *
+	 * @param insertionDelay
+	 *            The insertion delay (in seconds)
+	 */
+	public void setInsertionDelay(int insertionDelay) {
+		this.insertionDelay = insertionDelay;
+	}
+
+	/**
+	 * Sets the maximum number of inserts that may run at the same time.
+	 *
+	 * @param maxConcurrentInserts
+	 *            The maximum number of concurrent inserts
+	 */
+	public void setMaxConcurrentInserts(int maxConcurrentInserts) {
+		synchronized (insertLimits) {
+			this.maxConcurrentInserts = Math.max(1, maxConcurrentInserts);
+			insertLimits.notifyAll();
+		}
+	}
+
+	/**
+	 * Sets the bandwidth that may be used by inserts. This is not a hard
+	 * limit: after an insert has finished, the next insert is only started
+	 * once the bandwidth budget has been replenished.
+	 *
+	 * @param insertBandwidth
+	 *            The bandwidth for inserts (in KiB per second, {@code 0} for
+	 *            unlimited bandwidth)
+	 */
+	public void setInsertBandwidth(int insertBandwidth) {
+		synchronized (insertLimits) {
+			this.insertBandwidth = Math.max(0, insertBandwidth) * 1024L;
+			if (this.insertBandwidth == 0) {
+				nextInsertTime = 0;
+			}
+			insertLimits.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the number of inserts that are due but have not yet been
+	 * started because of the concurrency or bandwidth limits.
+	 *
+	 * @return The number of queued inserts
+	 */
+	public int getQueuedInserts() {
+		long now = System.currentTimeMillis();
+		int queuedInserts = 0;
+		synchronized (soneInserters) {
+			for (ScheduledInsert scheduledInsert : scheduledInserts.values()) {
+				if (scheduledInsert.getInsertTime() <= now) {
+					++queuedInserts;
+				}
+			}
+		}
+		return queuedInserts;
+	}
+
+	/**
+	 * Returns the number of inserts that are scheduled but not yet due.
+	 *
+	 * @return The number of scheduled inserts
+	 */
+	public int getScheduledInserts() {
+		long now = System.currentTimeMillis();
+		int scheduledInsertCount = 0;
+		synchronized (soneInserters) {
+			for (ScheduledInsert scheduledInsert : scheduledInserts.values()) {
+				if (scheduledInsert.getInsertTime() > now) {
+					++scheduledInsertCount;
+				}
+			}
+		}
+		return scheduledInsertCount;
+	}
+
+	/**
+	 * Returns the number of currently running inserts.
+	 *
+	 * @return The number of running inserts
+	 */
+	public int getRunningInserts() {
+		synchronized (insertLimits) {
+			return runningInserts;
+		}
+	}
+
+	/**
+	 * Returns the time the longest-waiting queued insert has been waiting
+	 * since it became due.
+	 *
+	 * @return The current wait time (in milliseconds)
+	 */
+	public long getCurrentWaitTime() {
+		long now = System.currentTimeMillis();
+		long currentWaitTime = 0;
+		synchronized (soneInserters) {
+			for (ScheduledInsert scheduledInsert : scheduledInserts.values()) {
+				currentWaitTime = Math.max(currentWaitTime, now - scheduledInsert.getInsertTime());
+			}
+		}
+		return currentWaitTime;
+	}
+
+	/**
+	 * Returns the average time inserts had to wait after they became due
+	 * before they were started.
+	 *
+	 * @return The average wait time (in milliseconds)
+	 */
+	public long getAverageWaitTime() {
+		synchronized (insertLimits) {
+			return (startedInserts == 0) ? 0 : (totalWaitTime / startedInserts);
+		}
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Adds the given Sone inserter to this scheduler and checks its Sone for
+	 * modifications that have not yet been inserted.
+	 *
+	 * @param soneInserter
+	 *            The Sone inserter to add
+	 */
+	public void addSoneInserter(SoneInserter soneInserter) {
+		synchronized (soneInserters) {
+			soneInserters.put(soneInserter.getSone(), soneInserter);
+		}
+		soneModified(soneInserter.getSone());
+	}
+
+	/**
+	 * Removes the Sone inserter for the given Sone from this scheduler.
+	 * Scheduled inserts for the Sone are cancelled; a currently running insert
+	 * will be finished, though.
+	 *
+	 * @param sone
+	 *            The Sone to stop inserting
+	 */
+	public void removeSone(Sone sone) {
+		synchronized (soneInserters) {
+			soneInserters.remove(sone);
+			cancelInsert(sone);
+		}
+	}
+
+	/**
+	 * Notifies the scheduler that the given Sone has (potentially) been
+	 * modified. The Sone is checked for modifications and an insert is
+	 * scheduled, rescheduled, or cancelled accordingly.
+	 *
+	 * @param sone
+	 *            The Sone that has been modified
+	 */
+	public void soneModified(Sone sone) {
+		SoneInserter soneInserter;
+		synchronized (soneInserters) {
+			soneInserter = soneInserters.get(sone);
+		}
+		if (soneInserter == null) {
+			return;
+		}
+
+		/* don’t insert locked Sones. */
+		if (core.isLocked(sone)) {
+			/* trigger redetection when the Sone is unlocked. */
+			soneInserter.resetModificationDetection();
+			synchronized (soneInserters) {
+				cancelInsert(sone);
+			}
+			return;
+		}
+
+		long insertTime = soneInserter.checkModification(insertionDelay);
+		synchronized (soneInserters) {
+			if (!soneInserters.containsKey(sone)) {
+				return;
+			}
+			if (insertTime < 0) {
+				cancelInsert(sone);
+			} else {
+				scheduleInsert(sone, insertTime);
+			}
+		}
+	}
+
+	//
+	// SERVICE METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void serviceRun() {
+		while (!shouldStop()) {
+			ScheduledInsert scheduledInsert;
+			try {
+				scheduledInsert = insertQueue.take();
+			} catch (InterruptedException ie1) {
+				continue;
+			}
+			if (scheduledInsert.getSone() == null) {
+				/* this is the marker added by serviceStop(). */
+				break;
+			}
+			synchronized (soneInserters) {
+				if (scheduledInserts.get(scheduledInsert.getSone()) != scheduledInsert) {
+					/* insert was cancelled or rescheduled. */
+					continue;
+				}
+			}
+			if (!acquireInsertSlot()) {
+				break;
+			}
+			final SoneInserter soneInserter;
+			synchronized (soneInserters) {
+				if (scheduledInserts.get(scheduledInsert.getSone()) == scheduledInsert) {
+					scheduledInserts.remove(scheduledInsert.getSone());
+					soneInserter = soneInserters.get(scheduledInsert.getSone());
+				} else {
+					/* insert was cancelled or rescheduled while waiting. */
+					soneInserter = null;
+				}
+			}
+			if (soneInserter == null) {
+				releaseInsertSlot(0);
+				continue;
+			}
+			long waitTime = Math.max(0, System.currentTimeMillis() - scheduledInsert.getInsertTime());
+			synchronized (insertLimits) {
+				++startedInserts;
+				totalWaitTime += waitTime;
+			}
+			logger.log(Level.FINEST, "Starting insert of %s after waiting %d ms.", new Object[] { soneInserter.getSone(), waitTime });
+			insertExecutor.execute(new Runnable() {
+
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public void run() {
+					long insertSize = 0;
+					try {
+						insertSize = insert(soneInserter);
+					} finally {
+						releaseInsertSlot(insertSize);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void serviceStop() {
+		insertQueue.add(new ScheduledInsert(null, 0));
+		synchronized (insertLimits) {
+			insertLimits.notifyAll();
+		}
+		insertExecutor.shutdown();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Waits until the concurrency and bandwidth limits allow another insert
+	 * to be started, and reserves a slot for it.
+	 *
+	 * @return {@code true} if a slot was reserved, {@code false} if the
+	 *         scheduler is being stopped
+	 */
+	private boolean acquireInsertSlot() {
+		synchronized (insertLimits) {
+			while (!shouldStop()) {
+				long now = System.currentTimeMillis();
+				if ((runningInserts < maxConcurrentInserts) && (nextInsertTime <= now)) {
+					++runningInserts;
+					return true;
+				}
+				try {
+					insertLimits.wait((runningInserts < maxConcurrentInserts) ? (nextInsertTime - now) : 0);
+				} catch (InterruptedException ie1) {
+					/* ignore, check again. */
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Releases a slot that was reserved by {@link #acquireInsertSlot()} and
+	 * charges the bandwidth budget with the given number of bytes.
+	 *
+	 * @param insertSize
+	 *            The number of bytes that were inserted
+	 */
+	private void releaseInsertSlot(long insertSize) {
+		synchronized (insertLimits) {
+			--runningInserts;
+			if (insertBandwidth > 0) {
+				nextInsertTime = Math.max(nextInsertTime, System.currentTimeMillis()) + insertSize * 1000 / insertBandwidth;
+			}
+			insertLimits.notifyAll();
+		}
+	}
+
+	/**
+	 * Inserts the Sone of the given Sone inserter. If the Sone has been
+	 * modified while it was being inserted (or the insert failed), a new
+	 * insert is scheduled.
+	 *
+	 * @param soneInserter
+	 *            The Sone inserter to insert the Sone of
+	 * @return The number of bytes that were inserted, or {@code 0} if the
+	 *         Sone was not inserted
+	 */
+	private long insert(SoneInserter soneInserter) {
+		Sone sone = soneInserter.getSone();
+		if (core.isLocked(sone)) {
+			logger.log(Level.FINE, "Not inserting locked Sone %s.", sone);
+			return 0;
+		}
+		if (soneInserter.isInserting()) {
+			/* the running insert will reschedule. */
+			return 0;
+		}
+		boolean success = soneInserter.insert();
+		if (soneInserter.isModified()) {
+			long insertTime = success ? soneInserter.checkModification(insertionDelay) : System.currentTimeMillis() + insertionDelay * 1000L;
+			if (insertTime >= 0) {
+				synchronized (soneInserters) {
+					if (soneInserters.containsKey(sone) && !scheduledInserts.containsKey(sone)) {
+						scheduleInsert(sone, insertTime);
+					}
+				}
+			}
+		}
+		return success ? soneInserter.getLastInsertSize() : 0;
+	}
+
+	/**
+	 * Schedules an insert of the given Sone at the given time, replacing an
+	 * insert that has previously been scheduled.
+	 * <p>
+	 * The caller has to hold the lock on {@link #soneInserters}.
+	 *
+	 * @param sone
+	 *            The Sone to insert
+	 * @param insertTime
+	 *            The time of the insert (in milliseconds since the epoch)
+	 */
+	private void scheduleInsert(Sone sone, long insertTime) {
+		ScheduledInsert scheduledInsert = scheduledInserts.get(sone);
+		if ((scheduledInsert != null) && (scheduledInsert.getInsertTime() == insertTime)) {
+			return;
+		}
+		cancelInsert(sone);
+		scheduledInsert = new ScheduledInsert(sone, insertTime);
+		scheduledInserts.put(sone, scheduledInsert);
+		insertQueue.add(scheduledInsert);
+		logger.log(Level.FINEST, "Scheduled insert of %s in %d ms.", new Object[] { sone, insertTime - System.currentTimeMillis() });
+	}
+
+	/**
+	 * Cancels the scheduled insert of the given Sone, if there is one.
+	 * <p>
+	 * The caller has to hold the lock on {@link #soneInserters}.
+	 *
+	 * @param sone
+	 *            The Sone whose insert to cancel
+	 */
+	private void cancelInsert(Sone sone) {
+		ScheduledInsert scheduledInsert = scheduledInserts.remove(sone);
+		if (scheduledInsert != null) {
+			insertQueue.remove(scheduledInsert);
+		}
+	}
+
+	/**
+	 * An entry in the {@link InsertScheduler#insertQueue}.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class ScheduledInsert implements Delayed {
+
+		/** The Sone to insert. */
+		private final Sone sone;
+
+		/** The time the insert is due. */
+		private final long insertTime;
+
+		/**
+		 * Creates a new scheduled insert.
+		 *
+		 * @param sone
+		 *            The Sone to insert
+		 * @param insertTime
+		 *            The time the insert is due (in milliseconds since the
+		 *            epoch)
+		 */
+		public ScheduledInsert(Sone sone, long insertTime) {
+			this.sone = sone;
+			this.insertTime = insertTime;
+		}
+
+		/**
+		 * Returns the Sone to insert.
+		 *
+		 * @return The Sone to insert
+		 */
+		public Sone getSone() {
+			return sone;
+		}
+
+		/**
+		 * Returns the time the insert is due.
+		 *
+		 * @return The time the insert is due (in milliseconds since the epoch)
+		 */
+		public long getInsertTime() {
+			return insertTime;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long getDelay(TimeUnit timeUnit) {
+			return timeUnit.convert(insertTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int compareTo(Delayed delayed) {
+			long otherInsertTime = ((ScheduledInsert) delayed).insertTime;
+			return (insertTime < otherInsertTime) ? -1 : ((insertTime > otherInsertTime) ? 1 : 0);
+		}
+
+	}
+
+}
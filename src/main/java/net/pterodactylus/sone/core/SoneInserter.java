@@ -17,13 +17,19 @@
 
 package net.pterodactylus.sone.core;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,11 +37,11 @@ import net.pterodactylus.sone.core.Core.SoneStatus;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
-import net.pterodactylus.sone.freenet.StringBucket;
+import net.pterodactylus.sone.freenet.ByteArrayBucket;
 import net.pterodactylus.sone.main.SonePlugin;
 import net.pterodactylus.util.io.Closer;
 import net.pterodactylus.util.logging.Logging;
-import net.pterodactylus.util.service.AbstractService;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.DefaultTemplateFactory;
 import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.Template;
@@ -43,20 +49,21 @@ import net.pterodactylus.util.template.TemplateException;
 import net.pterodactylus.util.template.XmlFilter;
 import freenet.client.async.ManifestElement;
 import freenet.keys.FreenetURI;
+import freenet.support.api.Bucket;
 
 /**
- * A Sone inserter is responsible for inserting a Sone if it has changed.
+ * A Sone inserter keeps track of modifications of a single local Sone and
+ * performs the actual insert when asked to do so by the {@link InsertScheduler}.
+ * It does not run a thread of its own; it is only ever invoked when the Sone
+ * has been modified or when an insert is due.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class SoneInserter extends AbstractService {
+public class SoneInserter {
 
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(SoneInserter.class);
 
-	/** The insertion delay (in seconds). */
-	private static volatile int insertionDelay = 60;
-
 	/** The template factory used to create the templates. */
 	private static final DefaultTemplateFactory templateFactory = new DefaultTemplateFactory();
 
@@ -68,6 +75,22 @@ public class SoneInserter extends AbstractService {
 	/** The UTF-8 charset. */
 	private static final Charset utf8Charset = Charset.forName("UTF-8");
 
+	/**
+	 * The maximum age of a separately inserted element before it is inserted
+	 * again (in milliseconds).
+	 */
+	private static final long MAXIMUM_REUSE_AGE = 24 * 60 * 60 * 1000;
+
+	/**
+	 * The maximum number of editions that may redirect to a separately
+	 * inserted element before it is inserted again.
+	 */
+	private static final int MAXIMUM_REUSE_COUNT = 20;
+
+	/** The parsed insert templates, by name. */
+	/* synchronize access on itself. */
+	private static final Map<String, Template> templates = new HashMap<String, Template>();
+
 	/** The core. */
 	private final Core core;
 
@@ -83,6 +106,27 @@ public class SoneInserter extends AbstractService {
 	/** The fingerprint of the last insert. */
 	private volatile String lastInsertFingerprint;
 
+	/** The fingerprint of the last modification check. */
+	/* synchronize access on sone. */
+	private String lastFingerprint = "";
+
+	/** The time the last modification was detected. */
+	/* synchronize access on sone. */
+	private long lastModificationTime;
+
+	/** Whether an insert is currently running. */
+	private final AtomicBoolean inserting = new AtomicBoolean();
+
+	/**
+	 * The content hashes and CHKs of manifest elements that have been
+	 * inserted separately, by name of the element.
+	 */
+	/* synchronize access on itself. */
+	private final Map<String, InsertedElement> insertedElements = new HashMap<String, InsertedElement>();
+
+	/** The number of bytes that were inserted by the last insert. */
+	private volatile long lastInsertSize;
+
 	/**
 	 * Creates a new Sone inserter.
 	 *
@@ -94,7 +138,6 @@ public class SoneInserter extends AbstractService {
 	 *            The Sone to insert
 	 */
 	public SoneInserter(Core core, FreenetInterface freenetInterface, Sone sone) {
-		super("Sone Inserter for “" + sone.getName() + "”", false);
 		this.core = core;
 		this.freenetInterface = freenetInterface;
 		this.sone = sone;
@@ -105,14 +148,12 @@ public class SoneInserter extends AbstractService {
 	//
 
 	/**
-	 * Changes the insertion delay, i.e. the time the Sone inserter waits after
-	 * it has noticed a Sone modification before it starts the insert.
+	 * Returns the Sone this inserter inserts.
 	 *
-	 * @param insertionDelay
-	 *            The insertion delay (in seconds)
+	 * @return The Sone of this inserter
 	 */
-	public static void setInsertionDelay(int insertionDelay) {
-		SoneInserter.insertionDelay = insertionDelay;
+	public Sone getSone() {
+		return sone;
 	}
 
 	/**
@@ -134,6 +175,16 @@ public class SoneInserter extends AbstractService {
 		this.lastInsertFingerprint = lastInsertFingerprint;
 	}
 
+	/**
+	 * Returns the number of bytes that were inserted by the last insert of
+	 * the Sone, regardless of whether the insert succeeded.
+	 *
+	 * @return The size of the last insert (in bytes)
+	 */
+	public long getLastInsertSize() {
+		return lastInsertSize;
+	}
+
 	/**
 	 * Returns whether the Sone inserter has detected a modification of the
 	 * Sone.
@@ -145,90 +196,124 @@ public class SoneInserter extends AbstractService {
 		return modified;
 	}
 
+	/**
+	 * Returns whether this inserter is currently inserting its Sone.
+	 *
+	 * @return {@code true} if an insert is running, {@code false} otherwise
+	 */
+	public boolean isInserting() {
+		return inserting.get();
+	}
+
 	//
-	// SERVICE METHODS
+	// ACTIONS
 	//
 
 	/**
-	 * {@inheritDoc}
+	 * Checks the Sone for modifications since the last check and returns the
+	 * time at which the Sone should be inserted.
+	 *
+	 * @param insertionDelay
+	 *            The insertion delay (in seconds)
+	 * @return The time at which the Sone should be inserted (in milliseconds
+	 *         since the epoch), or {@code -1} if the Sone does not need to be
+	 *         inserted
 	 */
-	@Override
-	protected void serviceRun() {
-		long lastModificationTime = 0;
-		String lastFingerprint = "";
-		while (!shouldStop()) {
-			/* check every seconds. */
-			sleep(1000);
-
-			/* don’t insert locked Sones. */
-			if (core.isLocked(sone)) {
-				/* trigger redetection when the Sone is unlocked. */
-				synchronized (sone) {
-					modified = !sone.getFingerprint().equals(lastInsertFingerprint);
+	public long checkModification(int insertionDelay) {
+		synchronized (sone) {
+			String fingerprint = sone.getFingerprint();
+			if (!fingerprint.equals(lastFingerprint)) {
+				if (fingerprint.equals(lastInsertFingerprint)) {
+					modified = false;
+					lastModificationTime = 0;
+					logger.log(Level.FINE, "Sone %s has been reverted to last insert state.", sone);
+				} else {
+					lastModificationTime = System.currentTimeMillis();
+					modified = true;
+					sone.setTime(lastModificationTime);
+					logger.log(Level.FINE, "Sone %s has been modified, waiting %d seconds before inserting.", new Object[] { sone.getName(), insertionDelay });
 				}
-				lastFingerprint = "";
-				lastModificationTime = 0;
-				continue;
+				lastFingerprint = fingerprint;
+				core.touchSone(sone);
 			}
+			if (!modified || (lastModificationTime == 0)) {
+				return -1;
+			}
+			return lastModificationTime + insertionDelay * 1000L;
+		}
+	}
 
-			InsertInformation insertInformation = null;
+	/**
+	 * Resets the modification detection so that the next call to
+	 * {@link #checkModification(int)} compares the Sone against its last
+	 * inserted state again. This is used while the Sone is locked.
+	 */
+	public void resetModificationDetection() {
+		synchronized (sone) {
+			modified = !sone.getFingerprint().equals(lastInsertFingerprint);
+			lastFingerprint = "";
+			lastModificationTime = 0;
+		}
+	}
+
+	/**
+	 * Inserts the Sone. If another insert of the same Sone is still running,
+	 * nothing is done.
+	 *
+	 * @return {@code true} if the Sone was inserted successfully,
+	 *         {@code false} otherwise
+	 */
+	public boolean insert() {
+		if (!inserting.compareAndSet(false, true)) {
+			logger.log(Level.FINE, "Sone %s is already being inserted.", sone);
+			return false;
+		}
+		lastInsertSize = 0;
+		try {
+			InsertInformation insertInformation;
+			String insertFingerprint;
 			synchronized (sone) {
-				String fingerprint = sone.getFingerprint();
-				if (!fingerprint.equals(lastFingerprint)) {
-					if (fingerprint.equals(lastInsertFingerprint)) {
-						modified = false;
-						lastModificationTime = 0;
-						logger.log(Level.FINE, "Sone %s has been reverted to last insert state.", sone);
-					} else {
-						lastModificationTime = System.currentTimeMillis();
-						modified = true;
-						sone.setTime(lastModificationTime);
-						logger.log(Level.FINE, "Sone %s has been modified, waiting %d seconds before inserting.", new Object[] { sone.getName(), insertionDelay });
-					}
-					lastFingerprint = fingerprint;
-				}
-				if (modified && (lastModificationTime > 0) && ((System.currentTimeMillis() - lastModificationTime) > (insertionDelay * 1000))) {
-					lastInsertFingerprint = fingerprint;
-					insertInformation = new InsertInformation(sone);
-				}
+				insertFingerprint = sone.getFingerprint();
+				insertInformation = new InsertInformation(sone);
 			}
 
-			if (insertInformation != null) {
-				logger.log(Level.INFO, "Inserting Sone “%s”…", new Object[] { sone.getName() });
-
-				boolean success = false;
-				try {
-					core.setSoneStatus(sone, SoneStatus.inserting);
-					FreenetURI finalUri = freenetInterface.insertDirectory(insertInformation.getInsertUri().setKeyType("USK").setSuggestedEdition(0), insertInformation.generateManifestEntries(), "index.html");
-					/* at this point we might already be stopped. */
-					if (shouldStop()) {
-						/* if so, bail out, don’t change anything. */
-						break;
-					}
-					sone.setLatestEdition(finalUri.getEdition());
-					success = true;
-					logger.log(Level.INFO, "Inserted Sone “%s” at %s.", new Object[] { sone.getName(), finalUri });
-				} catch (SoneException se1) {
-					logger.log(Level.WARNING, "Could not insert Sone “" + sone.getName() + "”!", se1);
-				} finally {
-					core.setSoneStatus(sone, SoneStatus.idle);
-				}
+			logger.log(Level.INFO, "Inserting Sone “%s”…", new Object[] { sone.getName() });
+			boolean success = false;
+			try {
+				core.setSoneStatus(sone, SoneStatus.inserting);
+				HashMap<String, Object> manifestEntries = insertInformation.generateManifestEntries();
+				lastInsertSize = insertInformation.getInsertSize();
+				FreenetURI finalUri = freenetInterface.insertDirectory(insertInformation.getInsertUri().setKeyType("USK").setSuggestedEdition(0), manifestEntries, "index.html");
+				sone.setLatestEdition(finalUri.getEdition());
+				success = true;
+				logger.log(Level.INFO, "Inserted Sone “%s” at %s.", new Object[] { sone.getName(), finalUri });
+			} catch (SoneException se1) {
+				logger.log(Level.WARNING, "Could not insert Sone “" + sone.getName() + "”!", se1);
+			} finally {
+				core.setSoneStatus(sone, SoneStatus.idle);
+			}
+			if (!success) {
+				return false;
+			}
 
-				/*
-				 * reset modification counter if Sone has not been modified
-				 * while it was inserted.
-				 */
-				if (success) {
-					synchronized (sone) {
-						if (lastInsertFingerprint.equals(sone.getFingerprint())) {
-							logger.log(Level.FINE, "Sone “%s” was not modified further, resetting counter…", new Object[] { sone });
-							core.saveSone(sone);
-							lastModificationTime = 0;
-							modified = false;
-						}
-					}
+			/*
+			 * reset modification counter if Sone has not been modified while it
+			 * was inserted.
+			 */
+			boolean unmodified;
+			synchronized (sone) {
+				lastInsertFingerprint = insertFingerprint;
+				unmodified = insertFingerprint.equals(sone.getFingerprint());
+				if (unmodified) {
+					logger.log(Level.FINE, "Sone “%s” was not modified further, resetting counter…", new Object[] { sone });
+					lastModificationTime = 0;
+					modified = false;
 				}
 			}
+			core.saveSone(sone);
+			return true;
+		} finally {
+			inserting.set(false);
 		}
 	}
 
@@ -244,6 +329,9 @@ public class SoneInserter extends AbstractService {
 		/** All properties of the Sone, copied for thread safety. */
 		private final Map<String, Object> soneProperties = new HashMap<String, Object>();
 
+		/** The number of bytes inserted for the manifest entries. */
+		private long insertSize;
+
 		/**
 		 * Creates a new insert information container.
 		 *
@@ -276,6 +364,17 @@ public class SoneInserter extends AbstractService {
 			return (FreenetURI) soneProperties.get("insertUri");
 		}
 
+		/**
+		 * Returns the number of bytes that are inserted for the manifest
+		 * entries generated by {@link #generateManifestEntries()}, including
+		 * the entries that were inserted separately.
+		 *
+		 * @return The size of the insert (in bytes)
+		 */
+		public long getInsertSize() {
+			return insertSize;
+		}
+
 		//
 		// ACTIONS
 		//
@@ -289,11 +388,16 @@ public class SoneInserter extends AbstractService {
 			HashMap<String, Object> manifestEntries = new HashMap<String, Object>();
 
 			/* first, create an index.html. */
-			manifestEntries.put("index.html", createManifestElement("index.html", "text/html; charset=utf-8", "/templates/insert/index.html"));
+			manifestEntries.put("index.html", createReusableManifestElement("index.html", "text/html; charset=utf-8", "/templates/insert/index.html"));
 
 			/* now, store the sone. */
 			manifestEntries.put("sone.xml", createManifestElement("sone.xml", "text/xml; charset=utf-8", "/templates/insert/sone.xml"));
 
+			for (Object manifestEntry : manifestEntries.values()) {
+				if ((manifestEntry != null) && (((ManifestElement) manifestEntry).getData() != null)) {
+					insertSize += ((ManifestElement) manifestEntry).getSize();
+				}
+			}
 			return manifestEntries;
 		}
 
@@ -301,6 +405,58 @@ public class SoneInserter extends AbstractService {
 		// PRIVATE METHODS
 		//
 
+		/**
+		 * Creates a new manifest element for a file that rarely changes. The
+		 * file is inserted separately as a CHK and the manifest element merely
+		 * redirects to it. As long as the content of the file does not change
+		 * the CHK of the last insert is reused, and the file is not inserted
+		 * again. To keep the CHK from dropping out of the network the file is
+		 * inserted again once the CHK has been reused for
+		 * {@link #MAXIMUM_REUSE_COUNT} editions or is older than
+		 * {@link #MAXIMUM_REUSE_AGE}.
+		 *
+		 * @param name
+		 *            The name of the file
+		 * @param contentType
+		 *            The content type of the file
+		 * @param templateName
+		 *            The name of the template to render
+		 * @return The manifest element
+		 */
+		@SuppressWarnings("synthetic-access")
+		private ManifestElement createReusableManifestElement(String name, String contentType, String templateName) {
+			ManifestElement manifestElement = createManifestElement(name, contentType, templateName);
+			if (manifestElement == null) {
+				return null;
+			}
+			String hash = calculateHash(manifestElement.getData());
+			if (hash == null) {
+				return manifestElement;
+			}
+			synchronized (insertedElements) {
+				InsertedElement insertedElement = insertedElements.get(name);
+				if ((insertedElement != null) && insertedElement.isReusable(hash)) {
+					insertedElement.reuse();
+					logger.log(Level.FINEST, "Reusing %s for unchanged “%s” of Sone %s.", new Object[] { insertedElement.getChk(), name, sone });
+					manifestElement.freeData();
+					return new ManifestElement(name, insertedElement.getChk(), contentType);
+				}
+			}
+			try {
+				FreenetURI chk = freenetInterface.insertFile(manifestElement.getData(), contentType, name);
+				insertSize += manifestElement.getSize();
+				synchronized (insertedElements) {
+					insertedElements.put(name, new InsertedElement(hash, chk));
+				}
+				logger.log(Level.FINE, "Inserted “%s” of Sone %s as %s.", new Object[] { name, sone, chk });
+				manifestElement.freeData();
+				return new ManifestElement(name, chk, contentType);
+			} catch (SoneException se1) {
+				logger.log(Level.WARNING, "Could not insert “" + name + "” separately, inserting it with the manifest.", se1);
+				return manifestElement;
+			}
+		}
+
 		/**
 		 * Creates a new manifest element.
 		 *
@@ -314,36 +470,164 @@ public class SoneInserter extends AbstractService {
 		 */
 		@SuppressWarnings("synthetic-access")
 		private ManifestElement createManifestElement(String name, String contentType, String templateName) {
-			InputStreamReader templateInputStreamReader;
-			Template template = templateFactory.createTemplate(templateInputStreamReader = new InputStreamReader(getClass().getResourceAsStream(templateName), utf8Charset));
-			try {
-				template.parse();
-			} catch (TemplateException te1) {
-				logger.log(Level.SEVERE, "Could not parse template “" + templateName + "”!", te1);
+			Template template = getTemplate(templateName);
+			if (template == null) {
 				return null;
-			} finally {
-				Closer.close(templateInputStreamReader);
 			}
 
-			template.set("currentSone", soneProperties);
-			template.set("version", SonePlugin.VERSION);
-			StringWriter writer = new StringWriter();
-			StringBucket bucket = null;
+			DataProvider dataProvider = template.createDataProvider();
+			dataProvider.setData("currentSone", soneProperties);
+			dataProvider.setData("version", SonePlugin.VERSION);
+			ByteArrayBucket bucket = new ByteArrayBucket();
+			Writer writer = null;
 			try {
-				template.render(writer);
-				bucket = new StringBucket(writer.toString(), utf8Charset);
+				writer = new OutputStreamWriter(bucket.getOutputStream(), utf8Charset);
+				template.render(dataProvider, writer);
+				writer.flush();
+				bucket.setReadOnly();
 				return new ManifestElement(name, bucket, contentType, bucket.size());
 			} catch (TemplateException te1) {
 				logger.log(Level.SEVERE, "Could not render template “" + templateName + "”!", te1);
 				return null;
+			} catch (IOException ioe1) {
+				logger.log(Level.SEVERE, "Could not render template “" + templateName + "”!", ioe1);
+				return null;
 			} finally {
 				Closer.close(writer);
-				if (bucket != null) {
-					bucket.free();
-				}
 			}
 		}
 
 	}
 
+	/**
+	 * Calculates the SHA-256 hash of the content of the given bucket.
+	 *
+	 * @param bucket
+	 *            The bucket to hash
+	 * @return The hash of the bucket’s content as a hexadecimal string, or
+	 *         {@code null} if the hash could not be calculated
+	 */
+	private static String calculateHash(Bucket bucket) {
+		InputStream bucketInputStream = null;
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			bucketInputStream = bucket.getInputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = bucketInputStream.read(buffer)) != -1) {
+				messageDigest.update(buffer, 0, read);
+			}
+			StringBuilder hash = new StringBuilder();
+			for (byte hashByte : messageDigest.digest()) {
+				hash.append(String.format("%02x", hashByte & 0xff));
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException nsae1) {
+			logger.log(Level.WARNING, "SHA-256 is not available!", nsae1);
+			return null;
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, "Could not read bucket!", ioe1);
+			return null;
+		} finally {
+			Closer.close(bucketInputStream);
+		}
+	}
+
+	/**
+	 * Returns the parsed template with the given name. Templates are only
+	 * parsed once and are then shared between all Sone inserters; they are
+	 * rendered using a new {@link DataProvider} for every insert.
+	 *
+	 * @param templateName
+	 *            The name of the template
+	 * @return The parsed template, or {@code null} if the template could not
+	 *         be parsed
+	 */
+	private static Template getTemplate(String templateName) {
+		synchronized (templates) {
+			Template template = templates.get(templateName);
+			if (template != null) {
+				return template;
+			}
+			InputStreamReader templateInputStreamReader;
+			template = templateFactory.createTemplate(templateInputStreamReader = new InputStreamReader(SoneInserter.class.getResourceAsStream(templateName), utf8Charset));
+			try {
+				template.parse();
+			} catch (TemplateException te1) {
+				logger.log(Level.SEVERE, "Could not parse template “" + templateName + "”!", te1);
+				return null;
+			} finally {
+				Closer.close(templateInputStreamReader);
+			}
+			templates.put(templateName, template);
+			return template;
+		}
+	}
+
+	/**
+	 * Information about an element that was inserted separately from the
+	 * manifest.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class InsertedElement {
+
+		/** The hash of the content of the element. */
+		private final String hash;
+
+		/** The CHK of the element. */
+		private final FreenetURI chk;
+
+		/** The time the element was inserted. */
+		private final long insertTime = System.currentTimeMillis();
+
+		/** The number of editions that have reused the CHK. */
+		private int reuseCount;
+
+		/**
+		 * Creates a new inserted element.
+		 *
+		 * @param hash
+		 *            The hash of the content of the element
+		 * @param chk
+		 *            The CHK of the element
+		 */
+		public InsertedElement(String hash, FreenetURI chk) {
+			this.hash = hash;
+			this.chk = chk;
+		}
+
+		/**
+		 * Returns the CHK of the element.
+		 *
+		 * @return The CHK of the element
+		 */
+		public FreenetURI getChk() {
+			return chk;
+		}
+
+		/**
+		 * Returns whether the CHK of this element can be reused for content
+		 * with the given hash, i.e. whether the content is unchanged and the
+		 * CHK is neither too old nor has been reused too often.
+		 *
+		 * @param hash
+		 *            The hash of the content to insert
+		 * @return {@code true} if the CHK can be reused, {@code false} if the
+		 *         element has to be inserted again
+		 */
+		@SuppressWarnings("hiding")
+		public boolean isReusable(String hash) {
+			return this.hash.equals(hash) && (reuseCount < MAXIMUM_REUSE_COUNT) && ((System.currentTimeMillis() - insertTime) < MAXIMUM_REUSE_AGE);
+		}
+
+		/**
+		 * Records that another edition reuses the CHK of this element.
+		 */
+		public void reuse() {
+			reuseCount++;
+		}
+
+	}
+
 }
@@ -0,0 +1,196 @@
+/*
+ * FreenetSone - StatusUpdate.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.data;
+
+import java.util.List;
+
+/**
+ * A single page of a list of posts that is sorted by time. Only the posts of
+ * the page itself are stored, the total number of posts is used to calculate
+ * the number of pages. The accessors mirror the ones of the pagination plugin
+ * so that the same templates can be used to render the navigation.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class PostPage {
+
+	/** The posts on this page. */
+	private final List<Post> items;
+
+	/** The index of this page. */
+	private final int page;
+
+	/** The number of posts per page. */
+	private final int pageSize;
+
+	/** The total number of posts. */
+	private final int itemCount;
+
+	/**
+	 * Creates a new page of posts.
+	 *
+	 * @param items
+	 *            The posts on this page
+	 * @param page
+	 *            The index of this page (starting at {@code 0})
+	 * @param pageSize
+	 *            The number of posts per page
+	 * @param itemCount
+	 *            The total number of posts
+	 */
+	public PostPage(List<Post> items, int page, int pageSize, int itemCount) {
+		this.items = items;
+		this.page = page;
+		this.pageSize = pageSize;
+		this.itemCount = itemCount;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the posts on this page.
+	 *
+	 * @return The posts on this page
+	 */
+	public List<Post> getItems() {
+		return items;
+	}
+
+	/**
+	 * Returns the index of this page.
+	 *
+	 * @return The index of this page (starting at {@code 0})
+	 */
+	public int getPage() {
+		return page;
+	}
+
+	/**
+	 * Returns the number of this page.
+	 *
+	 * @return The number of this page (starting at {@code 1})
+	 */
+	public int getPageNumber() {
+		return page + 1;
+	}
+
+	/**
+	 * Returns the number of posts per page.
+	 *
+	 * @return The number of posts per page
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Returns the total number of posts.
+	 *
+	 * @return The total number of posts
+	 */
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * Returns the number of pages.
+	 *
+	 * @return The number of pages (at least {@code 1})
+	 */
+	public int getPageCount() {
+		return getPageCount(itemCount, pageSize);
+	}
+
+	/**
+	 * Returns whether more than one page exists.
+	 *
+	 * @return {@code true} if more than one page exists, {@code false}
+	 *         otherwise
+	 */
+	public boolean isNecessary() {
+		return getPageCount() > 1;
+	}
+
+	/**
+	 * Returns whether this page is the first page.
+	 *
+	 * @return {@code true} if this page is the first page, {@code false}
+	 *         otherwise
+	 */
+	public boolean isFirst() {
+		return page == 0;
+	}
+
+	/**
+	 * Returns whether this page is the last page.
+	 *
+	 * @return {@code true} if this page is the last page, {@code false}
+	 *         otherwise
+	 */
+	public boolean isLast() {
+		return page == (getPageCount() - 1);
+	}
+
+	/**
+	 * Returns the index of the previous page.
+	 *
+	 * @return The index of the previous page
+	 */
+	public int getPreviousPage() {
+		return Math.max(0, page - 1);
+	}
+
+	/**
+	 * Returns the index of the next page.
+	 *
+	 * @return The index of the next page
+	 */
+	public int getNextPage() {
+		return Math.min(getLastPage(), page + 1);
+	}
+
+	/**
+	 * Returns the index of the last page.
+	 *
+	 * @return The index of the last page
+	 */
+	public int getLastPage() {
+		return getPageCount() - 1;
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Returns the number of pages that are necessary to show the given number
+	 * of items.
+	 *
+	 * @param itemCount
+	 *            The number of items
+	 * @param pageSize
+	 *            The number of items per page
+	 * @return The number of pages (at least {@code 1})
+	 */
+	public static int getPageCount(int itemCount, int pageSize) {
+		return Math.max(1, (itemCount + pageSize - 1) / pageSize);
+	}
+
+}
@@ -90,6 +90,9 @@ public class Sone {
 	/** All posts. */
 	private final Set<Post> posts = Collections.synchronizedSet(new HashSet<Post>());
 
+	/** All posts, sorted by time; {@code null} if it has to be recreated. */
+	private volatile List<Post> sortedPosts;
+
 	/** All replies. */
 	private final Set<Reply> replies = Collections.synchronizedSet(new HashSet<Reply>());
 
@@ -367,16 +370,24 @@ public class Sone {
 
 	/**
 	 * Returns the list of posts of this Sone, sorted by time, newest first.
+	 * The list is only sorted again after the posts of this Sone have
+	 * changed; it can not be modified.
 	 *
 	 * @return All posts of this Sone
 	 */
 	public List<Post> getPosts() {
-		List<Post> sortedPosts;
-		synchronized (this) {
-			sortedPosts = new ArrayList<Post>(posts);
+		List<Post> currentSortedPosts = sortedPosts;
+		if (currentSortedPosts == null) {
+			synchronized (this) {
+				if (sortedPosts == null) {
+					List<Post> newSortedPosts = new ArrayList<Post>(posts);
+					Collections.sort(newSortedPosts, Post.TIME_COMPARATOR);
+					sortedPosts = Collections.unmodifiableList(newSortedPosts);
+				}
+				currentSortedPosts = sortedPosts;
+			}
 		}
-		Collections.sort(sortedPosts, Post.TIME_COMPARATOR);
-		return sortedPosts;
+		return currentSortedPosts;
 	}
 
 	/**
@@ -389,6 +400,7 @@ public class Sone {
 	public synchronized Sone setPosts(Collection<Post> posts) {
 		this.posts.clear();
 		this.posts.addAll(posts);
+		sortedPosts = null;
 		return this;
 	}
 
@@ -401,6 +413,7 @@ public class Sone {
 	 */
 	public synchronized void addPost(Post post) {
 		if (post.getSone().equals(this) && posts.add(post)) {
+			sortedPosts = null;
 			logger.log(Level.FINEST, "Adding %s to “%s”.", new Object[] { post, getName() });
 		}
 	}
@@ -413,7 +426,9 @@ public class Sone {
 	 */
 	public synchronized void removePost(Post post) {
 		if (post.getSone().equals(this)) {
-			posts.remove(post);
+			if (posts.remove(post)) {
+				sortedPosts = null;
+			}
 		}
 	}
 
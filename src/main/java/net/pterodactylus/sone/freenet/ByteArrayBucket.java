@@ -0,0 +1,179 @@
+/*
+ * Sone - ByteArrayBucket.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.freenet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.db4o.ObjectContainer;
+
+import freenet.support.api.Bucket;
+
+/**
+ * {@link Bucket} implementation that keeps its data in memory. The data is
+ * written to the bucket once, using the stream returned by
+ * {@link #getOutputStream()}; after the bucket has been
+ * {@link #setReadOnly() set to read-only} its data can be read any number of
+ * times without being copied.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ByteArrayBucket implements Bucket {
+
+	/** The data of the bucket. */
+	private final BucketOutputStream data;
+
+	/** Whether the bucket is read-only. */
+	private volatile boolean readOnly;
+
+	/**
+	 * Creates a new, empty byte array bucket.
+	 */
+	public ByteArrayBucket() {
+		this(new BucketOutputStream(8192));
+	}
+
+	/**
+	 * Creates a new byte array bucket that shares the given data.
+	 *
+	 * @param data
+	 *            The data of the bucket
+	 */
+	private ByteArrayBucket(BucketOutputStream data) {
+		this.data = data;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Bucket createShadow() {
+		ByteArrayBucket shadowBucket = new ByteArrayBucket(data);
+		shadowBucket.setReadOnly();
+		return shadowBucket;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void free() {
+		/* ignore, the garbage collector takes care of the data. */
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return data.getInputStream();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return getClass().getName() + "@" + hashCode();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		if (readOnly) {
+			throw new IOException("Bucket is read-only.");
+		}
+		return data;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeFrom(ObjectContainer objectContainer) {
+		/* ignore. */
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setReadOnly() {
+		readOnly = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long size() {
+		return data.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void storeTo(ObjectContainer objectContainer) {
+		/* ignore. */
+	}
+
+	/**
+	 * {@link ByteArrayOutputStream} that allows reading the written data
+	 * without copying it.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class BucketOutputStream extends ByteArrayOutputStream {
+
+		/**
+		 * Creates a new bucket output stream.
+		 *
+		 * @param initialSize
+		 *            The initial size of the buffer
+		 */
+		public BucketOutputStream(int initialSize) {
+			super(initialSize);
+		}
+
+		/**
+		 * Returns an input stream that reads the data that has been written to
+		 * this stream so far.
+		 *
+		 * @return An input stream reading the written data
+		 */
+		public synchronized InputStream getInputStream() {
+			return new ByteArrayInputStream(buf, 0, count);
+		}
+
+	}
+
+}
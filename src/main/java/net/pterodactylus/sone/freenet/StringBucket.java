@@ -40,6 +40,9 @@ public class StringBucket implements Bucket {
 	/** The encoding for the data. */
 	private final Charset encoding;
 
+	/** The encoded string. */
+	private final byte[] data;
+
 	/**
 	 * Creates a new string bucket using the default encoding.
 	 *
@@ -62,6 +65,7 @@ public class StringBucket implements Bucket {
 	public StringBucket(String string, Charset encoding) {
 		this.string = string;
 		this.encoding = encoding;
+		this.data = string.getBytes(encoding);
 	}
 
 	/**
@@ -69,7 +73,7 @@ public class StringBucket implements Bucket {
 	 */
 	@Override
 	public Bucket createShadow() {
-		return new StringBucket(string);
+		return new StringBucket(string, encoding);
 	}
 
 	/**
@@ -85,7 +89,7 @@ public class StringBucket implements Bucket {
 	 */
 	@Override
 	public InputStream getInputStream() throws IOException {
-		return new ByteArrayInputStream(string.getBytes(encoding));
+		return new ByteArrayInputStream(data);
 	}
 
 	/**
@@ -133,7 +137,7 @@ public class StringBucket implements Bucket {
 	 */
 	@Override
 	public long size() {
-		return string.getBytes(encoding).length;
+		return data.length;
 	}
 
 	/**
@@ -17,6 +17,8 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import java.util.ArrayList;
+
 import net.pterodactylus.util.event.AbstractListenerManager;
 import freenet.support.SimpleFieldSet;
 import freenet.support.api.Bucket;
@@ -38,13 +40,26 @@ public class ConnectorListenerManager extends AbstractListenerManager<PluginConn
 		super(pluginConnector);
 	}
 
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns whether there are any registered listeners.
+	 *
+	 * @return {@code true} if there are listeners, {@code false} otherwise
+	 */
+	public boolean hasListeners() {
+		return !getListeners().isEmpty();
+	}
+
 	//
 	// ACTIONS
 	//
 
 	/**
 	 * Notifies all registered listeners that a reply from the plugin was
-	 * received.
+	 * received. Listeners may remove themselves while they are notified.
 	 *
 	 * @param fields
 	 *            The fields of the reply
@@ -52,7 +67,7 @@ public class ConnectorListenerManager extends AbstractListenerManager<PluginConn
 	 *            The data of the reply (may be null)
 	 */
 	public void fireReceivedReply(SimpleFieldSet fields, Bucket data) {
-		for (ConnectorListener connectorListener : getListeners()) {
+		for (ConnectorListener connectorListener : new ArrayList<ConnectorListener>(getListeners())) {
 			connectorListener.receivedReply(getSource(), fields, data);
 		}
 	}
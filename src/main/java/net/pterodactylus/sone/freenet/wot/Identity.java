@@ -17,10 +17,13 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 /**
@@ -45,6 +48,9 @@ public class Identity {
 	/** The properties of the identity. */
 	private final Map<String, String> properties = Collections.synchronizedMap(new HashMap<String, String>());
 
+	/** The hash of the identity’s content, or {@code null} if not known. */
+	private volatile Long contentHash;
+
 	/**
 	 * Creates a new identity.
 	 *
@@ -92,6 +98,24 @@ public class Identity {
 		return requestUri;
 	}
 
+	/**
+	 * Returns a hash over the nickname, the request URI, the contexts, and the
+	 * properties of this identity. Two identities with the same ID and the same
+	 * content hash can be considered identical, which allows to check whether
+	 * an identity has changed without comparing all contexts and properties.
+	 * The hash is calculated on first use after the identity was changed.
+	 *
+	 * @return The content hash of this identity
+	 */
+	public long getContentHash() {
+		Long contentHash = this.contentHash;
+		if (contentHash == null) {
+			contentHash = calculateContentHash();
+			this.contentHash = contentHash;
+		}
+		return contentHash;
+	}
+
 	/**
 	 * Returns all contexts of this identity.
 	 *
@@ -110,8 +134,11 @@ public class Identity {
 	 *            All contexts of the identity
 	 */
 	void setContexts(Set<String> contexts) {
-		this.contexts.clear();
-		this.contexts.addAll(contexts);
+		synchronized (this.contexts) {
+			this.contexts.clear();
+			this.contexts.addAll(contexts);
+			contentHash = null;
+		}
 	}
 
 	/**
@@ -135,7 +162,10 @@ public class Identity {
 	 *            The context to add
 	 */
 	void addContext(String context) {
-		contexts.add(context);
+		synchronized (contexts) {
+			contexts.add(context);
+			contentHash = null;
+		}
 	}
 
 	/**
@@ -147,7 +177,10 @@ public class Identity {
 	 *            The context to remove
 	 */
 	void removeContext(String context) {
-		contexts.remove(context);
+		synchronized (contexts) {
+			contexts.remove(context);
+			contentHash = null;
+		}
 	}
 
 	/**
@@ -173,6 +206,7 @@ public class Identity {
 		synchronized (this.properties) {
 			this.properties.clear();
 			this.properties.putAll(properties);
+			contentHash = null;
 		}
 	}
 
@@ -189,6 +223,7 @@ public class Identity {
 	void setProperty(String name, String value) {
 		synchronized (properties) {
 			properties.put(name, value);
+			contentHash = null;
 		}
 	}
 
@@ -216,9 +251,87 @@ public class Identity {
 	void removeProperty(String name) {
 		synchronized (properties) {
 			properties.remove(name);
+			contentHash = null;
 		}
 	}
 
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Calculates the content hash of this identity. Every context and every
+	 * property is hashed on its own using SHA-256, and the resulting hashes are
+	 * combined in a way that does not depend on their order.
+	 *
+	 * @return The content hash of this identity
+	 */
+	private long calculateContentHash() {
+		MessageDigest messageDigest;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException nsae1) {
+			/* SHA-256 has to be supported by every Java platform. */
+			throw new IllegalStateException("SHA-256 is not available!", nsae1);
+		}
+		long hash = hash(messageDigest, nickname, requestUri);
+		long contextsHash = 0;
+		synchronized (contexts) {
+			for (String context : contexts) {
+				contextsHash += hash(messageDigest, context);
+			}
+		}
+		long propertiesHash = 0;
+		synchronized (properties) {
+			for (Entry<String, String> property : properties.entrySet()) {
+				propertiesHash += hash(messageDigest, property.getKey(), property.getValue());
+			}
+		}
+		return (hash * 31 + contextsHash) * 31 + propertiesHash;
+	}
+
+	/**
+	 * Calculates a 64-bit hash of the given strings. Every string is prefixed
+	 * with its length so that different strings can not result in the same
+	 * input for the message digest.
+	 *
+	 * @param messageDigest
+	 *            The message digest to use
+	 * @param strings
+	 *            The strings to hash (may contain {@code null})
+	 * @return The hash of the strings
+	 */
+	private static long hash(MessageDigest messageDigest, String... strings) {
+		for (String string : strings) {
+			int length = (string == null) ? -1 : string.length();
+			update(messageDigest, length >>> 16);
+			update(messageDigest, length);
+			for (int index = 0; index < length; ++index) {
+				update(messageDigest, string.charAt(index));
+			}
+		}
+		byte[] digest = messageDigest.digest();
+		long hash = 0;
+		for (int index = 0; index < 8; ++index) {
+			hash = (hash << 8) | (digest[index] & 0xff);
+		}
+		return hash;
+	}
+
+	/**
+	 * Updates the given message digest with the lower 16 bits of the given
+	 * value.
+	 *
+	 * @param messageDigest
+	 *            The message digest to update
+	 * @param value
+	 *            The value to update the message digest with
+	 */
+	private static void update(MessageDigest messageDigest, int value) {
+		messageDigest.update((byte) (value >>> 8));
+		messageDigest.update((byte) value);
+	}
+
 	//
 	// OBJECT METHODS
 	//
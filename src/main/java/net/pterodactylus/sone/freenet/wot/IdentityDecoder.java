@@ -0,0 +1,314 @@
+/*
+ * Sone - IdentityDecoder.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.freenet.wot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import freenet.support.SimpleFieldSet;
+
+/**
+ * Decodes the identities contained in a reply of the Web of Trust plugin.
+ * <p>
+ * The plugin stores the identities in numbered fields (“Identity0”,
+ * “Nickname0”, “RequestURI0”, …) and numbered subsets (“Contexts0”,
+ * “Properties0”). Instead of looking up each field with a constructed key
+ * until a key is missing, the decoder walks over the fields and subsets of
+ * the reply once and sorts them into identities by their index. The keys are
+ * parsed in place, so no temporary strings are created.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class IdentityDecoder {
+
+	/**
+	 * Decodes the own identities from a reply to a “GetOwnIdentities”
+	 * message.
+	 *
+	 * @param fields
+	 *            The fields of the reply
+	 * @return The decoded own identities
+	 */
+	public static Set<OwnIdentity> decodeOwnIdentities(SimpleFieldSet fields) {
+		List<IdentityFields> identityFields = decodeIdentityFields(fields, null);
+		Set<OwnIdentity> ownIdentities = new HashSet<OwnIdentity>(identityFields.size() * 4 / 3 + 1);
+		for (IdentityFields ownIdentityFields : identityFields) {
+			if ((ownIdentityFields == null) || (ownIdentityFields.id == null)) {
+				continue;
+			}
+			OwnIdentity ownIdentity = new OwnIdentity(ownIdentityFields.id, ownIdentityFields.nickname, ownIdentityFields.requestUri, ownIdentityFields.insertUri);
+			ownIdentity.setContexts(ownIdentityFields.getContexts());
+			ownIdentity.setProperties(ownIdentityFields.getProperties());
+			ownIdentities.add(ownIdentity);
+		}
+		return ownIdentities;
+	}
+
+	/**
+	 * Decodes the identities from a reply to a “GetIdentitiesByScore”
+	 * message. Identities that are already contained in the given map are not
+	 * decoded again; the identity from the map is returned instead. All newly
+	 * decoded identities are added to the map.
+	 *
+	 * @param fields
+	 *            The fields of the reply
+	 * @param knownIdentities
+	 *            The identities that have already been decoded, by ID
+	 * @return The decoded identities
+	 */
+	public static Set<Identity> decodeIdentities(SimpleFieldSet fields, Map<String, Identity> knownIdentities) {
+		List<IdentityFields> identityFields = decodeIdentityFields(fields, knownIdentities);
+		Set<Identity> identities = new HashSet<Identity>(identityFields.size() * 4 / 3 + 1);
+		for (IdentityFields currentIdentityFields : identityFields) {
+			if ((currentIdentityFields == null) || (currentIdentityFields.id == null)) {
+				continue;
+			}
+			Identity identity = currentIdentityFields.knownIdentity;
+			if (identity == null) {
+				identity = new Identity(currentIdentityFields.id, currentIdentityFields.nickname, currentIdentityFields.requestUri);
+				identity.setContexts(currentIdentityFields.getContexts());
+				identity.setProperties(currentIdentityFields.getProperties());
+				synchronized (knownIdentities) {
+					Identity knownIdentity = knownIdentities.get(identity.getId());
+					if (knownIdentity != null) {
+						identity = knownIdentity;
+					} else {
+						knownIdentities.put(identity.getId(), identity);
+					}
+				}
+			}
+			identities.add(identity);
+		}
+		return identities;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Sorts the fields and subsets of the given reply into identities by their
+	 * index. The contexts and properties of identities that are contained in
+	 * the given map of known identities are skipped.
+	 *
+	 * @param fields
+	 *            The fields of the reply
+	 * @param knownIdentities
+	 *            The identities that have already been decoded, by ID (may be
+	 *            {@code null})
+	 * @return The fields of the identities, by index
+	 */
+	private static List<IdentityFields> decodeIdentityFields(SimpleFieldSet fields, Map<String, Identity> knownIdentities) {
+		List<IdentityFields> identityFields = new ArrayList<IdentityFields>();
+		Map<String, String> values = fields.directKeyValues();
+		if (values != null) {
+			/* a reply can not contain more identities than fields. */
+			int maxIndex = values.size();
+			for (Entry<String, String> value : values.entrySet()) {
+				String key = value.getKey();
+				int index;
+				if ((index = parseIndex(key, "Identity", maxIndex)) > -1) {
+					IdentityFields currentIdentityFields = getIdentityFields(identityFields, index);
+					currentIdentityFields.id = value.getValue();
+					if (knownIdentities != null) {
+						currentIdentityFields.knownIdentity = knownIdentities.get(value.getValue());
+					}
+				} else if ((index = parseIndex(key, "Nickname", maxIndex)) > -1) {
+					getIdentityFields(identityFields, index).nickname = value.getValue();
+				} else if ((index = parseIndex(key, "RequestURI", maxIndex)) > -1) {
+					getIdentityFields(identityFields, index).requestUri = value.getValue();
+				} else if ((index = parseIndex(key, "InsertURI", maxIndex)) > -1) {
+					getIdentityFields(identityFields, index).insertUri = value.getValue();
+				}
+			}
+		}
+		Map<String, SimpleFieldSet> subsets = fields.directSubsets();
+		if (subsets != null) {
+			for (Entry<String, SimpleFieldSet> subset : subsets.entrySet()) {
+				String key = subset.getKey();
+				int index;
+				IdentityFields currentIdentityFields;
+				if ((index = parseIndex(key, "Contexts", identityFields.size())) > -1) {
+					currentIdentityFields = identityFields.get(index);
+					if ((currentIdentityFields != null) && (currentIdentityFields.knownIdentity == null)) {
+						currentIdentityFields.contexts = decodeContexts(subset.getValue());
+					}
+				} else if ((index = parseIndex(key, "Properties", identityFields.size())) > -1) {
+					currentIdentityFields = identityFields.get(index);
+					if ((currentIdentityFields != null) && (currentIdentityFields.knownIdentity == null)) {
+						currentIdentityFields.properties = decodeProperties(subset.getValue());
+					}
+				}
+			}
+		}
+		return identityFields;
+	}
+
+	/**
+	 * Decodes the contexts from the given subset (“Context0”, “Context1”, …).
+	 *
+	 * @param contextFields
+	 *            The subset containing the contexts
+	 * @return The decoded contexts
+	 */
+	private static Set<String> decodeContexts(SimpleFieldSet contextFields) {
+		Map<String, String> values = contextFields.directKeyValues();
+		if (values == null) {
+			return Collections.emptySet();
+		}
+		Set<String> contexts = new HashSet<String>(values.size() * 4 / 3 + 1);
+		for (Entry<String, String> value : values.entrySet()) {
+			if (parseIndex(value.getKey(), "Context", Integer.MAX_VALUE) > -1) {
+				contexts.add(value.getValue());
+			}
+		}
+		return contexts;
+	}
+
+	/**
+	 * Decodes the properties from the given subset (“Property0.Name”,
+	 * “Property0.Value”, …).
+	 *
+	 * @param propertyFields
+	 *            The subset containing the properties
+	 * @return The decoded properties
+	 */
+	private static Map<String, String> decodeProperties(SimpleFieldSet propertyFields) {
+		Map<String, SimpleFieldSet> subsets = propertyFields.directSubsets();
+		if (subsets == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> properties = new HashMap<String, String>(subsets.size() * 4 / 3 + 1);
+		for (Entry<String, SimpleFieldSet> subset : subsets.entrySet()) {
+			if (parseIndex(subset.getKey(), "Property", Integer.MAX_VALUE) < 0) {
+				continue;
+			}
+			String name = subset.getValue().get("Name");
+			if (name != null) {
+				properties.put(name, subset.getValue().get("Value"));
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * Returns the fields of the identity with the given index, creating them
+	 * if necessary.
+	 *
+	 * @param identityFields
+	 *            The fields of all identities, by index
+	 * @param index
+	 *            The index of the identity
+	 * @return The fields of the identity with the given index
+	 */
+	private static IdentityFields getIdentityFields(List<IdentityFields> identityFields, int index) {
+		while (identityFields.size() <= index) {
+			identityFields.add(null);
+		}
+		IdentityFields currentIdentityFields = identityFields.get(index);
+		if (currentIdentityFields == null) {
+			currentIdentityFields = new IdentityFields();
+			identityFields.set(index, currentIdentityFields);
+		}
+		return currentIdentityFields;
+	}
+
+	/**
+	 * Parses the index from a key that consists of the given prefix and a
+	 * decimal number, such as “Identity12”.
+	 *
+	 * @param key
+	 *            The key to parse
+	 * @param prefix
+	 *            The expected prefix
+	 * @param maxIndex
+	 *            The index limit (exclusive)
+	 * @return The index, or {@code -1} if the key does not consist of the
+	 *         prefix and a number lower than the limit
+	 */
+	private static int parseIndex(String key, String prefix, int maxIndex) {
+		int prefixLength = prefix.length();
+		if ((key.length() == prefixLength) || (key.length() > (prefixLength + 9)) || !key.startsWith(prefix)) {
+			return -1;
+		}
+		int index = 0;
+		for (int position = prefixLength; position < key.length(); ++position) {
+			char digit = key.charAt(position);
+			if ((digit < '0') || (digit > '9')) {
+				return -1;
+			}
+			index = index * 10 + (digit - '0');
+		}
+		return (index < maxIndex) ? index : -1;
+	}
+
+	/**
+	 * Container for the fields of a single identity.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class IdentityFields {
+
+		/** The ID of the identity. */
+		String id;
+
+		/** The nickname of the identity. */
+		String nickname;
+
+		/** The request URI of the identity. */
+		String requestUri;
+
+		/** The insert URI of the identity. */
+		String insertUri;
+
+		/** The contexts of the identity. */
+		Set<String> contexts;
+
+		/** The properties of the identity. */
+		Map<String, String> properties;
+
+		/** The already known identity with the same ID. */
+		Identity knownIdentity;
+
+		/**
+		 * Returns the contexts of the identity.
+		 *
+		 * @return The contexts of the identity
+		 */
+		public Set<String> getContexts() {
+			return (contexts == null) ? Collections.<String> emptySet() : contexts;
+		}
+
+		/**
+		 * Returns the properties of the identity.
+		 *
+		 * @return The properties of the identity
+		 */
+		public Map<String, String> getProperties() {
+			return (properties == null) ? Collections.<String, String> emptyMap() : properties;
+		}
+
+	}
+
+}
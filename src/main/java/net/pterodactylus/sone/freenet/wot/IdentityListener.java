@@ -18,6 +18,7 @@
 package net.pterodactylus.sone.freenet.wot;
 
 import java.util.EventListener;
+import java.util.Set;
 
 /**
  * Listener interface for {@link IdentityManager} events.
@@ -53,12 +54,18 @@ public interface IdentityListener extends EventListener {
 	public void identityAdded(Identity identity);
 
 	/**
-	 * Notifies a listener that some properties of the identity have changed.
+	 * Notifies a listener that some contexts or properties of the identity
+	 * have changed.
 	 *
 	 * @param identity
 	 *            The updated identity
+	 * @param changedContexts
+	 *            The contexts that were added or removed
+	 * @param changedProperties
+	 *            The names of the properties that were added, removed, or
+	 *            changed
 	 */
-	public void identityUpdated(Identity identity);
+	public void identityUpdated(Identity identity, Set<String> changedContexts, Set<String> changedProperties);
 
 	/**
 	 * Notifies a listener that an identity has gone away.
@@ -17,6 +17,8 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import java.util.Set;
+
 import net.pterodactylus.util.event.AbstractListenerManager;
 
 /**
@@ -79,15 +81,21 @@ public class IdentityListenerManager extends AbstractListenerManager<IdentityMan
 	}
 
 	/**
-	 * Notifies all listeners that some properties of the identity have changed.
+	 * Notifies all listeners that some contexts or properties of the identity
+	 * have changed.
 	 *
-	 * @see IdentityListener#identityUpdated(Identity)
+	 * @see IdentityListener#identityUpdated(Identity, Set, Set)
 	 * @param identity
 	 *            The updated identity
+	 * @param changedContexts
+	 *            The contexts that were added or removed
+	 * @param changedProperties
+	 *            The names of the properties that were added, removed, or
+	 *            changed
 	 */
-	public void fireIdentityUpdated(Identity identity) {
+	public void fireIdentityUpdated(Identity identity, Set<String> changedContexts, Set<String> changedProperties) {
 		for (IdentityListener identityListener : getListeners()) {
-			identityListener.identityUpdated(identity);
+			identityListener.identityUpdated(identity, changedContexts, changedProperties);
 		}
 	}
 
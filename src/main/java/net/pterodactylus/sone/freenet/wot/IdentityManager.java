@@ -17,11 +17,17 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,7 +41,14 @@ import net.pterodactylus.util.service.AbstractService;
  * <p>
  * It is also responsible for polling identities from the Web of Trust plugin
  * and notifying registered {@link IdentityListener}s when {@link Identity}s and
- * {@link OwnIdentity}s are discovered or disappearing.
+ * {@link OwnIdentity}s are discovered or disappearing. The own identities that
+ * were retrieved by the last poll are kept in memory so that they can be
+ * looked up without contacting the Web of Trust plugin.
+ * <p>
+ * The interval between two polls adapts to the amount of change: every poll
+ * that finds no changes doubles the interval, up to the maximum poll
+ * interval; a poll that finds changes, or a local action that changes
+ * identities, resets it to the minimum poll interval.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
@@ -49,6 +62,9 @@ public class IdentityManager extends AbstractService {
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(IdentityManager.class);
 
+	/** The time a ping may take before the plugin is considered missing. */
+	private static final long PING_TIMEOUT = 5 * 1000;
+
 	/** The event manager. */
 	private final IdentityListenerManager identityListenerManager = new IdentityListenerManager();
 
@@ -62,6 +78,42 @@ public class IdentityManager extends AbstractService {
 	/* synchronize access on syncObject. */
 	private Map<String, OwnIdentity> currentOwnIdentities = new HashMap<String, OwnIdentity>();
 
+	/** The duration of the last poll (in milliseconds). */
+	private volatile long lastPollDuration = -1;
+
+	/** The number of identities loaded during the last poll. */
+	private volatile int lastPollIdentities = -1;
+
+	/** The minimum time between two polls (in milliseconds). */
+	private volatile long minimumPollInterval = 60 * 1000;
+
+	/** The maximum time between two polls (in milliseconds). */
+	private volatile long maximumPollInterval = 10 * 60 * 1000;
+
+	/** The current time between two polls (in milliseconds). */
+	private volatile long pollInterval = minimumPollInterval;
+
+	/** Whether a poll was requested while a poll was running. */
+	private final AtomicBoolean pollRequested = new AtomicBoolean(false);
+
+	/** The unique nicknames of the currently known own identities. */
+	private volatile NicknameIndex ownIdentityNicknameIndex = new NicknameIndex(Collections.<OwnIdentity> emptySet());
+
+	/** The ping that is currently waiting for an answer. */
+	/* synchronize access on pingSyncObject. */
+	private Future<Void> pendingPing;
+
+	/** The time the pending ping was sent. */
+	/* synchronize access on pingSyncObject. */
+	private long pendingPingTime;
+
+	/** Whether the last ping was answered. */
+	/* synchronize access on pingSyncObject. */
+	private boolean connected = true;
+
+	/** The object to synchronize access to the pings on. */
+	private final Object pingSyncObject = new Object();
+
 	/**
 	 * Creates a new identity manager.
 	 *
@@ -112,63 +164,171 @@ public class IdentityManager extends AbstractService {
 	}
 
 	/**
-	 * Returns whether the Web of Trust plugin could be reached during the last
-	 * try.
+	 * Returns whether the Web of Trust plugin can be reached. This method
+	 * does not wait for the plugin: it returns the result of the last ping
+	 * that was answered and sends a new ping for the next call. The plugin
+	 * is considered missing if a ping is not answered within five seconds.
 	 *
 	 * @return {@code true} if the Web of Trust plugin is connected,
 	 *         {@code false} otherwise
 	 */
 	public boolean isConnected() {
-		try {
-			webOfTrustConnector.ping();
-			return true;
-		} catch (PluginException pe1) {
-			/* not connected, ignore. */
-			return false;
+		synchronized (pingSyncObject) {
+			if (pendingPing != null) {
+				if (pendingPing.isDone()) {
+					try {
+						pendingPing.get();
+						connected = true;
+					} catch (InterruptedException ie1) {
+						/* ping is done, will not happen. */
+					} catch (ExecutionException ee1) {
+						connected = false;
+					}
+					pendingPing = null;
+				} else if ((System.currentTimeMillis() - pendingPingTime) >= PING_TIMEOUT) {
+					connected = false;
+				}
+			}
+			if (pendingPing == null) {
+				try {
+					pendingPing = webOfTrustConnector.pingAsync();
+					pendingPingTime = System.currentTimeMillis();
+				} catch (PluginException pe1) {
+					/* not connected, ignore. */
+					connected = false;
+				}
+			}
+			return connected;
 		}
 	}
 
 	/**
-	 * Returns the own identity with the given ID.
+	 * Sets the time after which requests to the Web of Trust plugin fail if
+	 * they have not been answered.
+	 *
+	 * @param requestTimeout
+	 *            The request timeout (in seconds)
+	 */
+	public void setRequestTimeout(int requestTimeout) {
+		webOfTrustConnector.setRequestTimeout(Math.max(1, requestTimeout) * 1000L);
+	}
+
+	/**
+	 * Sets the minimum time between two polls of the Web of Trust plugin. The
+	 * identity manager uses this interval after a poll found changes.
+	 *
+	 * @param minimumPollInterval
+	 *            The minimum poll interval (in seconds)
+	 */
+	public void setMinimumPollInterval(int minimumPollInterval) {
+		this.minimumPollInterval = Math.max(1, minimumPollInterval) * 1000L;
+		pollInterval = Math.max(pollInterval, this.minimumPollInterval);
+	}
+
+	/**
+	 * Sets the maximum time between two polls of the Web of Trust plugin. The
+	 * poll interval is doubled after every poll that found no changes, up to
+	 * this value.
+	 *
+	 * @param maximumPollInterval
+	 *            The maximum poll interval (in seconds)
+	 */
+	public void setMaximumPollInterval(int maximumPollInterval) {
+		this.maximumPollInterval = Math.max(1, maximumPollInterval) * 1000L;
+		pollInterval = Math.min(pollInterval, this.maximumPollInterval);
+	}
+
+	/**
+	 * Returns the time the identity manager currently waits between two polls
+	 * of the Web of Trust plugin.
+	 *
+	 * @return The current poll interval (in milliseconds)
+	 */
+	public long getPollInterval() {
+		return pollInterval;
+	}
+
+	/**
+	 * Returns the number of identities that were loaded during the last
+	 * complete poll of the Web of Trust plugin.
+	 *
+	 * @return The number of identities loaded during the last poll, or
+	 *         {@code -1} if no poll has completed yet
+	 */
+	public int getLastPollIdentities() {
+		return lastPollIdentities;
+	}
+
+	/**
+	 * Returns how long the last complete poll of the Web of Trust plugin took,
+	 * i.e. the time between requesting the own identities and having merged
+	 * the trust lists of all own identities.
+	 *
+	 * @return The duration of the last poll (in milliseconds), or {@code -1}
+	 *         if no poll has completed yet
+	 */
+	public long getLastPollDuration() {
+		return lastPollDuration;
+	}
+
+	/**
+	 * Returns the own identity with the given ID. Only the own identities
+	 * that were retrieved from the Web of Trust plugin during the last poll
+	 * are considered; this method does not contact the plugin.
 	 *
 	 * @param id
 	 *            The ID of the own identity
 	 * @return The own identity, or {@code null} if there is no such identity
 	 */
 	public OwnIdentity getOwnIdentity(String id) {
-		Set<OwnIdentity> allOwnIdentities = getAllOwnIdentities();
-		for (OwnIdentity ownIdentity : allOwnIdentities) {
-			if (ownIdentity.getId().equals(id)) {
-				return ownIdentity;
-			}
+		synchronized (syncObject) {
+			return currentOwnIdentities.get(id);
 		}
-		return null;
 	}
 
 	/**
-	 * Returns all own identities.
+	 * Returns all own identities that were retrieved from the Web of Trust
+	 * plugin during the last poll. This method does not contact the plugin.
 	 *
 	 * @return All own identities
 	 */
 	public Set<OwnIdentity> getAllOwnIdentities() {
-		try {
-			Set<OwnIdentity> ownIdentities = webOfTrustConnector.loadAllOwnIdentities();
-			Map<String, OwnIdentity> newOwnIdentities = new HashMap<String, OwnIdentity>();
-			for (OwnIdentity ownIdentity : ownIdentities) {
-				newOwnIdentities.put(ownIdentity.getId(), ownIdentity);
-			}
-			checkOwnIdentities(newOwnIdentities);
-			return ownIdentities;
-		} catch (PluginException pe1) {
-			logger.log(Level.WARNING, "Could not load all own identities!", pe1);
-			return Collections.emptySet();
+		synchronized (syncObject) {
+			return new HashSet<OwnIdentity>(currentOwnIdentities.values());
 		}
 	}
 
+	/**
+	 * Returns the shortest abbreviation of the given identity’s nickname that
+	 * distinguishes it from all own identities. The abbreviations are only
+	 * calculated when the own identities change.
+	 *
+	 * @see NicknameIndex
+	 * @param identity
+	 *            The identity to get the unique nickname for
+	 * @return The unique nickname of the identity
+	 */
+	public String getUniqueNickname(Identity identity) {
+		return ownIdentityNicknameIndex.getUniqueNickname(identity);
+	}
+
 	//
 	// ACTIONS
 	//
 
+	/**
+	 * Requests that the Web of Trust plugin is polled as soon as possible,
+	 * regardless of the current poll interval. This should be called after
+	 * local actions that change identities, such as creating a Sone. The poll
+	 * interval is reset to the minimum poll interval. If a poll is currently
+	 * running, the next poll is started right after it has finished.
+	 */
+	public void requestPoll() {
+		pollInterval = minimumPollInterval;
+		pollRequested.set(true);
+		notifySyncObject();
+	}
+
 	/**
 	 * Adds a context to the given own identity.
 	 *
@@ -184,6 +344,7 @@ public class IdentityManager extends AbstractService {
 		try {
 			webOfTrustConnector.addContext(ownIdentity, context);
 			ownIdentity.addContext(context);
+			requestPoll();
 		} catch (PluginException pe1) {
 			logger.log(Level.WARNING, "Could not add context " + context + " to OwnIdentity " + ownIdentity + ".", pe1);
 		}
@@ -204,6 +365,7 @@ public class IdentityManager extends AbstractService {
 		try {
 			webOfTrustConnector.removeContext(ownIdentity, context);
 			ownIdentity.removeContext(context);
+			requestPoll();
 		} catch (PluginException pe1) {
 			logger.log(Level.WARNING, "Could not remove context " + context + " from OwnIdentity " + ownIdentity + ".", pe1);
 		}
@@ -256,7 +418,9 @@ public class IdentityManager extends AbstractService {
 	protected void serviceRun() {
 		Map<String, Identity> oldIdentities = Collections.emptyMap();
 		while (!shouldStop()) {
-			Map<String, Identity> currentIdentities = new HashMap<String, Identity>();
+			long pollStartTime = System.currentTimeMillis();
+			pollRequested.set(false);
+			Map<String, Identity> currentIdentities = Collections.synchronizedMap(new HashMap<String, Identity>());
 			Map<String, OwnIdentity> currentOwnIdentities = new HashMap<String, OwnIdentity>();
 
 			/* get all identities with the wanted context from WoT. */
@@ -268,17 +432,27 @@ public class IdentityManager extends AbstractService {
 				for (OwnIdentity ownIdentity : ownIdentities) {
 					currentOwnIdentities.put(ownIdentity.getId(), ownIdentity);
 				}
-				checkOwnIdentities(currentOwnIdentities);
+				int changedIdentities = checkOwnIdentities(currentOwnIdentities) ? 1 : 0;
 
-				/* now filter for context and get all identities. */
+				/* now filter for context and request all identities at once. */
 				currentOwnIdentities.clear();
-				for (OwnIdentity ownIdentity : ownIdentities) {
-					if ((context != null) && !ownIdentity.hasContext(context)) {
-						continue;
+				List<Future<Set<Identity>>> trustedIdentityRequests = new ArrayList<Future<Set<Identity>>>();
+				try {
+					for (OwnIdentity ownIdentity : ownIdentities) {
+						if ((context != null) && !ownIdentity.hasContext(context)) {
+							continue;
+						}
+						currentOwnIdentities.put(ownIdentity.getId(), ownIdentity);
+						trustedIdentityRequests.add(webOfTrustConnector.loadTrustedIdentitiesAsync(ownIdentity, context, currentIdentities));
 					}
-					currentOwnIdentities.put(ownIdentity.getId(), ownIdentity);
-					for (Identity identity : webOfTrustConnector.loadTrustedIdentities(ownIdentity, context)) {
-						currentIdentities.put(identity.getId(), identity);
+
+					/* the identities are merged into currentIdentities. */
+					for (Future<Set<Identity>> trustedIdentityRequest : trustedIdentityRequests) {
+						WebOfTrustConnector.getResult(trustedIdentityRequest);
+					}
+				} finally {
+					for (Future<Set<Identity>> trustedIdentityRequest : trustedIdentityRequests) {
+						trustedIdentityRequest.cancel(false);
 					}
 				}
 
@@ -286,52 +460,26 @@ public class IdentityManager extends AbstractService {
 				for (Identity oldIdentity : oldIdentities.values()) {
 					if (!currentIdentities.containsKey(oldIdentity.getId())) {
 						identityListenerManager.fireIdentityRemoved(oldIdentity);
+						++changedIdentities;
 					}
 				}
 
-				/* find new identities. */
-				for (Identity currentIdentity : currentIdentities.values()) {
-					if (!oldIdentities.containsKey(currentIdentity.getId())) {
-						identityListenerManager.fireIdentityAdded(currentIdentity);
-					}
-				}
-
-				/* check for changes in the contexts. */
-				for (Identity oldIdentity : oldIdentities.values()) {
-					if (!currentIdentities.containsKey(oldIdentity.getId())) {
-						continue;
-					}
-					Identity newIdentity = currentIdentities.get(oldIdentity.getId());
-					Set<String> oldContexts = oldIdentity.getContexts();
-					Set<String> newContexts = newIdentity.getContexts();
-					if (oldContexts.size() != newContexts.size()) {
-						identityListenerManager.fireIdentityUpdated(newIdentity);
-						continue;
-					}
-					for (String oldContext : oldContexts) {
-						if (!newContexts.contains(oldContext)) {
-							identityListenerManager.fireIdentityUpdated(newIdentity);
-							break;
+				/* find new and changed identities. */
+				synchronized (currentIdentities) {
+					for (Entry<String, Identity> currentIdentityEntry : currentIdentities.entrySet()) {
+						Identity currentIdentity = currentIdentityEntry.getValue();
+						Identity oldIdentity = oldIdentities.get(currentIdentity.getId());
+						if (oldIdentity == null) {
+							identityListenerManager.fireIdentityAdded(currentIdentity);
+							++changedIdentities;
+							continue;
 						}
-					}
-				}
-
-				/* check for changes in the properties. */
-				for (Identity oldIdentity : oldIdentities.values()) {
-					if (!currentIdentities.containsKey(oldIdentity.getId())) {
-						continue;
-					}
-					Identity newIdentity = currentIdentities.get(oldIdentity.getId());
-					Map<String, String> oldProperties = oldIdentity.getProperties();
-					Map<String, String> newProperties = newIdentity.getProperties();
-					if (oldProperties.size() != newProperties.size()) {
-						identityListenerManager.fireIdentityUpdated(newIdentity);
-						continue;
-					}
-					for (Entry<String, String> oldProperty : oldProperties.entrySet()) {
-						if (!newProperties.containsKey(oldProperty.getKey()) || !newProperties.get(oldProperty.getKey()).equals(oldProperty.getValue())) {
-							identityListenerManager.fireIdentityUpdated(newIdentity);
-							break;
+						if (oldIdentity.getContentHash() != currentIdentity.getContentHash()) {
+							Identity updatedIdentity = updateIdentity(oldIdentity, currentIdentity);
+							currentIdentityEntry.setValue(updatedIdentity);
+							++changedIdentities;
+						} else {
+							currentIdentityEntry.setValue(oldIdentity);
 						}
 					}
 				}
@@ -339,12 +487,25 @@ public class IdentityManager extends AbstractService {
 				/* remember the current set of identities. */
 				oldIdentities = currentIdentities;
 
+				/* poll more often while identities change, back off otherwise. */
+				if (changedIdentities > 0) {
+					pollInterval = minimumPollInterval;
+				} else {
+					pollInterval = Math.min(pollInterval * 2, maximumPollInterval);
+				}
+
+				lastPollDuration = System.currentTimeMillis() - pollStartTime;
+				lastPollIdentities = currentIdentities.size();
+				logger.log(Level.FINE, "Loaded %d identities (%d changed) from %d trust lists in %d ms, next poll in %d s.", new Object[] { currentIdentities.size(), changedIdentities, trustedIdentityRequests.size(), lastPollDuration, pollInterval / 1000 });
+
 			} catch (PluginException pe1) {
 				logger.log(Level.WARNING, "WoT has disappeared!", pe1);
 			}
 
-			/* wait a minute before checking again. */
-			sleep(60 * 1000);
+			/* wait for the poll interval (or until a poll is requested). */
+			if (!pollRequested.getAndSet(false)) {
+				sleep(pollInterval);
+			}
 		}
 	}
 
@@ -352,32 +513,111 @@ public class IdentityManager extends AbstractService {
 	// PRIVATE METHODS
 	//
 
+	/**
+	 * Compares the contexts and properties of the given old and new identity
+	 * and notifies all listeners about the changes. If the nickname and the
+	 * request URI of the identity are unchanged, the old identity is updated
+	 * and returned so that the same {@link Identity} object is used for as
+	 * long as the identity exists; otherwise the new identity is returned.
+	 *
+	 * @param oldIdentity
+	 *            The identity from the last poll
+	 * @param newIdentity
+	 *            The identity from the current poll
+	 * @return The identity to keep
+	 */
+	private Identity updateIdentity(Identity oldIdentity, Identity newIdentity) {
+		Set<String> oldContexts = new HashSet<String>(oldIdentity.getContexts());
+		Set<String> newContexts = new HashSet<String>(newIdentity.getContexts());
+		Set<String> changedContexts = new HashSet<String>();
+		for (String context : oldContexts) {
+			if (!newContexts.contains(context)) {
+				changedContexts.add(context);
+			}
+		}
+		for (String context : newContexts) {
+			if (!oldContexts.contains(context)) {
+				changedContexts.add(context);
+			}
+		}
+		Map<String, String> oldProperties = new HashMap<String, String>(oldIdentity.getProperties());
+		Map<String, String> newProperties = new HashMap<String, String>(newIdentity.getProperties());
+		Set<String> changedProperties = new HashSet<String>();
+		for (Entry<String, String> oldProperty : oldProperties.entrySet()) {
+			String newValue = newProperties.get(oldProperty.getKey());
+			if ((newValue == null) || !newValue.equals(oldProperty.getValue())) {
+				changedProperties.add(oldProperty.getKey());
+			}
+		}
+		for (String newPropertyName : newProperties.keySet()) {
+			if (!oldProperties.containsKey(newPropertyName)) {
+				changedProperties.add(newPropertyName);
+			}
+		}
+		Identity identity = newIdentity;
+		if (equals(oldIdentity.getNickname(), newIdentity.getNickname()) && equals(oldIdentity.getRequestUri(), newIdentity.getRequestUri())) {
+			oldIdentity.setContexts(newContexts);
+			oldIdentity.setProperties(newProperties);
+			identity = oldIdentity;
+		}
+		if (!changedContexts.isEmpty() || !changedProperties.isEmpty() || (identity != oldIdentity)) {
+			identityListenerManager.fireIdentityUpdated(identity, changedContexts, changedProperties);
+		}
+		return identity;
+	}
+
+	/**
+	 * Compares the two given strings, either of which may be {@code null}.
+	 *
+	 * @param first
+	 *            The first string
+	 * @param second
+	 *            The second string
+	 * @return {@code true} if both strings are {@code null} or equal,
+	 *         {@code false} otherwise
+	 */
+	private static boolean equals(String first, String second) {
+		return (first == null) ? (second == null) : first.equals(second);
+	}
+
 	/**
 	 * Checks the given new list of own identities for added or removed own
 	 * identities, as compared to {@link #currentOwnIdentities}.
 	 *
 	 * @param newOwnIdentities
 	 *            The new own identities
+	 * @return {@code true} if own identities were added, removed, or renamed,
+	 *         {@code false} otherwise
 	 */
-	private void checkOwnIdentities(Map<String, OwnIdentity> newOwnIdentities) {
+	private boolean checkOwnIdentities(Map<String, OwnIdentity> newOwnIdentities) {
 		synchronized (syncObject) {
+			boolean changed = false;
 
 			/* find removed own identities: */
 			for (OwnIdentity oldOwnIdentity : currentOwnIdentities.values()) {
 				if (!newOwnIdentities.containsKey(oldOwnIdentity.getId())) {
 					identityListenerManager.fireOwnIdentityRemoved(oldOwnIdentity);
+					changed = true;
 				}
 			}
 
 			/* find added own identities. */
 			for (OwnIdentity currentOwnIdentity : newOwnIdentities.values()) {
-				if (!currentOwnIdentities.containsKey(currentOwnIdentity.getId())) {
+				OwnIdentity oldOwnIdentity = currentOwnIdentities.get(currentOwnIdentity.getId());
+				if (oldOwnIdentity == null) {
 					identityListenerManager.fireOwnIdentityAdded(currentOwnIdentity);
+					changed = true;
+				} else if (!equals(oldOwnIdentity.getNickname(), currentOwnIdentity.getNickname())) {
+					changed = true;
 				}
 			}
 
 			currentOwnIdentities.clear();
 			currentOwnIdentities.putAll(newOwnIdentities);
+			if (changed) {
+				ownIdentityNicknameIndex = new NicknameIndex(currentOwnIdentities.values());
+			}
+			return changed;
 		}
 	}
 
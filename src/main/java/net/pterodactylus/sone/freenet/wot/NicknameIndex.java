@@ -0,0 +1,172 @@
+/*
+ * Sone - NicknameIndex.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.freenet.wot;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index that calculates the shortest unique abbreviation of an identity’s
+ * nickname with respect to a set of identities. The abbreviation consists of
+ * the nickname, followed by “@” and as many characters of the identity’s ID
+ * as are necessary to distinguish it from all other identities in the set
+ * with the same nickname. If the nickname itself is unique, it is used
+ * without any ID characters.
+ * <p>
+ * The IDs of all identities are stored in a prefix tree per nickname, and the
+ * abbreviations of the identities in the set are calculated once when the
+ * index is created.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class NicknameIndex {
+
+	/** The maximum number of ID characters to append. */
+	private static final int MAX_ID_LENGTH = 43;
+
+	/** The prefix trees of the IDs, by nickname. */
+	private final Map<String, Node> nicknameTrees = new HashMap<String, Node>();
+
+	/** The precalculated unique nicknames, by identity ID. */
+	private final Map<String, String> uniqueNicknames = new HashMap<String, String>();
+
+	/**
+	 * Creates a new nickname index for the given identities. Identities
+	 * without a nickname are not indexed.
+	 *
+	 * @param identities
+	 *            The identities to index
+	 */
+	@SuppressWarnings("synthetic-access")
+	public NicknameIndex(Collection<? extends Identity> identities) {
+		for (Identity identity : identities) {
+			if (!hasNickname(identity)) {
+				continue;
+			}
+			Node node = nicknameTrees.get(identity.getNickname());
+			if (node == null) {
+				node = new Node();
+				nicknameTrees.put(identity.getNickname(), node);
+			}
+			++node.count;
+			for (char idCharacter : identity.getId().toCharArray()) {
+				node = node.getChild(idCharacter);
+				++node.count;
+			}
+		}
+		for (Identity identity : identities) {
+			if (!hasNickname(identity)) {
+				continue;
+			}
+			uniqueNicknames.put(identity.getId(), calculateUniqueNickname(identity, true));
+		}
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the shortest abbreviation of the given identity’s nickname that
+	 * is unique among the indexed identities.
+	 *
+	 * @param identity
+	 *            The identity to get the unique nickname for
+	 * @return The unique nickname of the identity
+	 */
+	public String getUniqueNickname(Identity identity) {
+		String uniqueNickname = uniqueNicknames.get(identity.getId());
+		if (uniqueNickname != null) {
+			return uniqueNickname;
+		}
+		return calculateUniqueNickname(identity, false);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Calculates the unique nickname of the given identity.
+	 *
+	 * @param identity
+	 *            The identity to calculate the unique nickname for
+	 * @param indexed
+	 *            {@code true} if the identity itself is contained in the
+	 *            prefix tree, {@code false} otherwise
+	 * @return The unique nickname of the identity
+	 */
+	@SuppressWarnings("synthetic-access")
+	private String calculateUniqueNickname(Identity identity, boolean indexed) {
+		String id = identity.getId();
+		int own = indexed ? 1 : 0;
+		Node node = nicknameTrees.get(identity.getNickname());
+		int length = 0;
+		int maxLength = Math.min(MAX_ID_LENGTH, id.length());
+		while ((node != null) && ((node.count - own) > 0) && (length < maxLength)) {
+			node = node.children.get(id.charAt(length++));
+		}
+		return identity.getNickname() + ((length > 0) ? "@" + id.substring(0, length) : "");
+	}
+
+	/**
+	 * Returns whether the given identity has a non-empty nickname.
+	 *
+	 * @param identity
+	 *            The identity to check
+	 * @return {@code true} if the identity has a nickname, {@code false}
+	 *         otherwise
+	 */
+	private static boolean hasNickname(Identity identity) {
+		return (identity.getNickname() != null) && (identity.getNickname().length() > 0);
+	}
+
+	/**
+	 * A node of the prefix tree.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class Node {
+
+		/** The number of IDs that pass through this node. */
+		private int count;
+
+		/** The child nodes, by next ID character. */
+		private final Map<Character, Node> children = new HashMap<Character, Node>();
+
+		/**
+		 * Returns the child node for the given character, creating it if
+		 * necessary.
+		 *
+		 * @param character
+		 *            The next character of the ID
+		 * @return The child node
+		 */
+		public Node getChild(char character) {
+			Node child = children.get(character);
+			if (child == null) {
+				child = new Node();
+				children.put(character, child);
+			}
+			return child;
+		}
+
+	}
+
+}
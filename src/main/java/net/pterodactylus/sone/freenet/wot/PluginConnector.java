@@ -72,7 +72,8 @@ public class PluginConnector implements FredPluginTalker {
 	}
 
 	/**
-	 * Removes a connection listener for the given plugin connection.
+	 * Removes a connection listener for the given plugin connection. If it
+	 * was the last listener for the connection, the connection is forgotten.
 	 *
 	 * @param pluginName
 	 *            The name of the plugin
@@ -82,7 +83,16 @@ public class PluginConnector implements FredPluginTalker {
 	 *            The listener to remove
 	 */
 	public void removeConnectorListener(String pluginName, String identifier, ConnectorListener connectorListener) {
-		getConnectorListenerManager(pluginName, identifier).removeListener(connectorListener);
+		synchronized (connectorListenerManagers) {
+			ConnectorListenerManager connectorListenerManager = getConnectorListenerManager(pluginName, identifier, false);
+			if (connectorListenerManager == null) {
+				return;
+			}
+			connectorListenerManager.removeListener(connectorListener);
+			if (!connectorListenerManager.hasListeners()) {
+				connectorListenerManagers.remove(new Pair<String, String>(pluginName, identifier));
+			}
+		}
 	}
 
 	//
@@ -156,12 +166,14 @@ public class PluginConnector implements FredPluginTalker {
 	 *         and {@code create} is {@code false}
 	 */
 	private ConnectorListenerManager getConnectorListenerManager(String pluginName, String identifier, boolean create) {
-		ConnectorListenerManager connectorListenerManager = connectorListenerManagers.get(new Pair<String, String>(pluginName, identifier));
-		if (create && (connectorListenerManager == null)) {
-			connectorListenerManager = new ConnectorListenerManager(this);
-			connectorListenerManagers.put(new Pair<String, String>(pluginName, identifier), connectorListenerManager);
+		synchronized (connectorListenerManagers) {
+			ConnectorListenerManager connectorListenerManager = connectorListenerManagers.get(new Pair<String, String>(pluginName, identifier));
+			if (create && (connectorListenerManager == null)) {
+				connectorListenerManager = new ConnectorListenerManager(this);
+				connectorListenerManagers.put(new Pair<String, String>(pluginName, identifier), connectorListenerManager);
+			}
+			return connectorListenerManager;
 		}
-		return connectorListenerManager;
 	}
 
 	/**
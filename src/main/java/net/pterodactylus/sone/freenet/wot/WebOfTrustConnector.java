@@ -17,11 +17,18 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,10 +38,22 @@ import freenet.support.api.Bucket;
 
 /**
  * Connector for the Web of Trust plugin.
+ * <p>
+ * Every request is sent using its own request identifier as connection
+ * identifier. The Web of Trust plugin’s reply is delivered with the same
+ * identifier so that it can be matched to the request it belongs to, which
+ * allows any number of requests to be in flight at the same time.
+ * <p>
+ * All requests are available in two flavours: the “…Async” methods send the
+ * request and immediately return a {@link Future} for the result, the other
+ * methods wait for the result. A request that has not been answered after
+ * the {@link #setRequestTimeout(long) request timeout} fails with a
+ * {@link PluginException}; requests can also be {@link Future#cancel(boolean)
+ * cancelled}.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class WebOfTrustConnector implements ConnectorListener {
+public class WebOfTrustConnector {
 
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(WebOfTrustConnector.class);
@@ -45,12 +64,18 @@ public class WebOfTrustConnector implements ConnectorListener {
 	/** A random connection identifier. */
 	private static final String PLUGIN_CONNECTION_IDENTIFIER = "Sone-WoT-Connector-" + Math.abs(Math.random());
 
-	/** The current replies that we wait for. */
-	private final Map<String, Reply> replies = Collections.synchronizedMap(new HashMap<String, Reply>());
+	/** The counter for request identifiers. */
+	private final AtomicLong requestCounter = new AtomicLong();
+
+	/** The requests that wait for a reply, by request identifier. */
+	private final Map<String, Request<?>> pendingRequests = Collections.synchronizedMap(new HashMap<String, Request<?>>());
 
 	/** The plugin connector. */
 	private final PluginConnector pluginConnector;
 
+	/** The time after which a request fails (in milliseconds). */
+	private volatile long requestTimeout = 60 * 1000;
+
 	/**
 	 * Creates a new Web of Trust connector that uses the given plugin
 	 * connector.
@@ -60,7 +85,31 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 */
 	public WebOfTrustConnector(PluginConnector pluginConnector) {
 		this.pluginConnector = pluginConnector;
-		pluginConnector.addConnectorListener(WOT_PLUGIN_NAME, PLUGIN_CONNECTION_IDENTIFIER, this);
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Sets the time after which requests that have not been answered by the
+	 * Web of Trust plugin fail. The new timeout only applies to requests that
+	 * are sent after it has been set.
+	 *
+	 * @param requestTimeout
+	 *            The request timeout (in milliseconds)
+	 */
+	public void setRequestTimeout(long requestTimeout) {
+		this.requestTimeout = requestTimeout;
+	}
+
+	/**
+	 * Returns the number of requests that are currently waiting for a reply.
+	 *
+	 * @return The number of pending requests
+	 */
+	public int getPendingRequestCount() {
+		return pendingRequests.size();
 	}
 
 	//
@@ -75,24 +124,24 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 *             if the own identities can not be loaded
 	 */
 	public Set<OwnIdentity> loadAllOwnIdentities() throws PluginException {
-		Reply reply = performRequest(SimpleFieldSetConstructor.create().put("Message", "GetOwnIdentities").get(), "OwnIdentities");
-		SimpleFieldSet fields = reply.getFields();
-		int ownIdentityCounter = -1;
-		Set<OwnIdentity> ownIdentities = new HashSet<OwnIdentity>();
-		while (true) {
-			String id = fields.get("Identity" + ++ownIdentityCounter);
-			if (id == null) {
-				break;
+		return getResult(loadAllOwnIdentitiesAsync());
+	}
+
+	/**
+	 * Requests all own identities from the Web of Trust plugin.
+	 *
+	 * @return The future own identities
+	 * @throws PluginException
+	 *             if the request can not be sent
+	 */
+	public Future<Set<OwnIdentity>> loadAllOwnIdentitiesAsync() throws PluginException {
+		return sendRequest(SimpleFieldSetConstructor.create().put("Message", "GetOwnIdentities").get(), new Request<Set<OwnIdentity>>("OwnIdentities") {
+
+			@Override
+			protected Set<OwnIdentity> parseReply(SimpleFieldSet fields) {
+				return IdentityDecoder.decodeOwnIdentities(fields);
 			}
-			String requestUri = fields.get("RequestURI" + ownIdentityCounter);
-			String insertUri = fields.get("InsertURI" + ownIdentityCounter);
-			String nickname = fields.get("Nickname" + ownIdentityCounter);
-			OwnIdentity ownIdentity = new OwnIdentity(id, nickname, requestUri, insertUri);
-			ownIdentity.setContexts(parseContexts("Contexts" + ownIdentityCounter + ".", fields));
-			ownIdentity.setProperties(parseProperties("Properties" + ownIdentityCounter + ".", fields));
-			ownIdentities.add(ownIdentity);
-		}
-		return ownIdentities;
+		});
 	}
 
 	/**
@@ -122,23 +171,54 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 *             if an error occured talking to the Web of Trust plugin
 	 */
 	public Set<Identity> loadTrustedIdentities(OwnIdentity ownIdentity, String context) throws PluginException {
-		Reply reply = performRequest(SimpleFieldSetConstructor.create().put("Message", "GetIdentitiesByScore").put("TreeOwner", ownIdentity.getId()).put("Selection", "+").put("Context", (context == null) ? "" : context).get(), "Identities");
-		SimpleFieldSet fields = reply.getFields();
-		Set<Identity> identities = new HashSet<Identity>();
-		int identityCounter = -1;
-		while (true) {
-			String id = fields.get("Identity" + ++identityCounter);
-			if (id == null) {
-				break;
+		return getResult(loadTrustedIdentitiesAsync(ownIdentity, context));
+	}
+
+	/**
+	 * Requests all identities that the given identities trusts with a score of
+	 * more than 0 and the (optional) given context.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @param context
+	 *            The context to filter, or {@code null}
+	 * @return The future trusted identities
+	 * @throws PluginException
+	 *             if the request can not be sent
+	 */
+	public Future<Set<Identity>> loadTrustedIdentitiesAsync(OwnIdentity ownIdentity, String context) throws PluginException {
+		return loadTrustedIdentitiesAsync(ownIdentity, context, new HashMap<String, Identity>());
+	}
+
+	/**
+	 * Requests all identities that the given identities trusts with a score of
+	 * more than 0 and the (optional) given context. Identities that are
+	 * already contained in the given map are not parsed again; instead, the
+	 * identity from the map is returned. All newly parsed identities are
+	 * added to the map so that the trust lists of several own identities can
+	 * be merged into a single map, with a single {@link Identity} object per
+	 * identity.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @param context
+	 *            The context to filter, or {@code null}
+	 * @param knownIdentities
+	 *            The identities that have already been parsed, by ID (needs
+	 *            to be thread-safe if it is shared between requests whose
+	 *            results are retrieved by different threads)
+	 * @return The future trusted identities
+	 * @throws PluginException
+	 *             if the request can not be sent
+	 */
+	public Future<Set<Identity>> loadTrustedIdentitiesAsync(OwnIdentity ownIdentity, String context, final Map<String, Identity> knownIdentities) throws PluginException {
+		return sendRequest(SimpleFieldSetConstructor.create().put("Message", "GetIdentitiesByScore").put("TreeOwner", ownIdentity.getId()).put("Selection", "+").put("Context", (context == null) ? "" : context).get(), new Request<Set<Identity>>("Identities") {
+
+			@Override
+			protected Set<Identity> parseReply(SimpleFieldSet fields) {
+				return IdentityDecoder.decodeIdentities(fields, knownIdentities);
 			}
-			String nickname = fields.get("Nickname" + identityCounter);
-			String requestUri = fields.get("RequestURI" + identityCounter);
-			Identity identity = new Identity(id, nickname, requestUri);
-			identity.setContexts(parseContexts("Contexts" + identityCounter + ".", fields));
-			identity.setProperties(parseProperties("Properties" + identityCounter + ".", fields));
-			identities.add(identity);
-		}
-		return identities;
+		});
 	}
 
 	/**
@@ -152,7 +232,22 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 *             if an error occured talking to the Web of Trust plugin
 	 */
 	public void addContext(OwnIdentity ownIdentity, String context) throws PluginException {
-		performRequest(SimpleFieldSetConstructor.create().put("Message", "AddContext").put("Identity", ownIdentity.getId()).put("Context", context).get(), "ContextAdded");
+		getResult(addContextAsync(ownIdentity, context));
+	}
+
+	/**
+	 * Requests that the given context is added to the given identity.
+	 *
+	 * @param ownIdentity
+	 *            The identity to add the context to
+	 * @param context
+	 *            The context to add
+	 * @return A future that is done once the context has been added
+	 * @throws PluginException
+	 *             if the request can not be sent
+	 */
+	public Future<Void> addContextAsync(OwnIdentity ownIdentity, String context) throws PluginException {
+		return sendRequest(SimpleFieldSetConstructor.create().put("Message", "AddContext").put("Identity", ownIdentity.getId()).put("Context", context).get(), new EmptyRequest("ContextAdded"));
 	}
 
 	/**
@@ -166,7 +261,22 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 *             if an error occured talking to the Web of Trust plugin
 	 */
 	public void removeContext(OwnIdentity ownIdentity, String context) throws PluginException {
-		performRequest(SimpleFieldSetConstructor.create().put("Message", "RemoveContext").put("Identity", ownIdentity.getId()).put("Context", context).get(), "ContextRemoved");
+		getResult(removeContextAsync(ownIdentity, context));
+	}
+
+	/**
+	 * Requests that the given context is removed from the given identity.
+	 *
+	 * @param ownIdentity
+	 *            The identity to remove the context from
+	 * @param context
+	 *            The context to remove
+	 * @return A future that is done once the context has been removed
+	 * @throws PluginException
+	 *             if the request can not be sent
+	 */
+	public Future<Void> removeContextAsync(OwnIdentity ownIdentity, String context) throws PluginException {
+		return sendRequest(SimpleFieldSetConstructor.create().put("Message", "RemoveContext").put("Identity", ownIdentity.getId()).put("Context", context).get(), new EmptyRequest("ContextRemoved"));
 	}
 
 	/**
@@ -181,8 +291,28 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 *             if an error occured talking to the Web of Trust plugin
 	 */
 	public String getProperty(Identity identity, String name) throws PluginException {
-		Reply reply = performRequest(SimpleFieldSetConstructor.create().put("Message", "GetProperty").put("Identity", identity.getId()).put("Property", name).get(), "PropertyValue");
-		return reply.getFields().get("Property");
+		return getResult(getPropertyAsync(identity, name));
+	}
+
+	/**
+	 * Requests the value of the property with the given name.
+	 *
+	 * @param identity
+	 *            The identity whose properties to check
+	 * @param name
+	 *            The name of the property to return
+	 * @return The future value of the property
+	 * @throws PluginException
+	 *             if the request can not be sent
+	 */
+	public Future<String> getPropertyAsync(Identity identity, String name) throws PluginException {
+		return sendRequest(SimpleFieldSetConstructor.create().put("Message", "GetProperty").put("Identity", identity.getId()).put("Property", name).get(), new Request<String>("PropertyValue") {
+
+			@Override
+			protected String parseReply(SimpleFieldSet fields) {
+				return fields.get("Property");
+			}
+		});
 	}
 
 	/**
@@ -198,7 +328,25 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 *             if an error occured talking to the Web of Trust plugin
 	 */
 	public void setProperty(OwnIdentity ownIdentity, String name, String value) throws PluginException {
-		performRequest(SimpleFieldSetConstructor.create().put("Message", "SetProperty").put("Identity", ownIdentity.getId()).put("Property", name).put("Value", value).get(), "PropertyAdded");
+		getResult(setPropertyAsync(ownIdentity, name, value));
+	}
+
+	/**
+	 * Requests that the property with the given name is set to the given
+	 * value.
+	 *
+	 * @param ownIdentity
+	 *            The identity to set the property on
+	 * @param name
+	 *            The name of the property to set
+	 * @param value
+	 *            The value to set
+	 * @return A future that is done once the property has been set
+	 * @throws PluginException
+	 *             if the request can not be sent
+	 */
+	public Future<Void> setPropertyAsync(OwnIdentity ownIdentity, String name, String value) throws PluginException {
+		return sendRequest(SimpleFieldSetConstructor.create().put("Message", "SetProperty").put("Identity", ownIdentity.getId()).put("Property", name).put("Value", value).get(), new EmptyRequest("PropertyAdded"));
 	}
 
 	/**
@@ -212,7 +360,22 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 *             if an error occured talking to the Web of Trust plugin
 	 */
 	public void removeProperty(OwnIdentity ownIdentity, String name) throws PluginException {
-		performRequest(SimpleFieldSetConstructor.create().put("Message", "RemoveProperty").put("Identity", ownIdentity.getId()).put("Property", name).get(), "PropertyRemoved");
+		getResult(removePropertyAsync(ownIdentity, name));
+	}
+
+	/**
+	 * Requests that the property with the given name is removed.
+	 *
+	 * @param ownIdentity
+	 *            The identity to remove the property from
+	 * @param name
+	 *            The name of the property to remove
+	 * @return A future that is done once the property has been removed
+	 * @throws PluginException
+	 *             if the request can not be sent
+	 */
+	public Future<Void> removePropertyAsync(OwnIdentity ownIdentity, String name) throws PluginException {
+		return sendRequest(SimpleFieldSetConstructor.create().put("Message", "RemoveProperty").put("Identity", ownIdentity.getId()).put("Property", name).get(), new EmptyRequest("PropertyRemoved"));
 	}
 
 	/**
@@ -223,196 +386,413 @@ public class WebOfTrustConnector implements ConnectorListener {
 	 *             if the plugin is not loaded
 	 */
 	public void ping() throws PluginException {
-		performRequest(SimpleFieldSetConstructor.create().put("Message", "Ping").get(), "Pong");
+		getResult(pingAsync());
 	}
 
-	//
-	// PRIVATE ACTIONS
-	//
-
 	/**
-	 * Parses the contexts from the given fields.
+	 * Pings the Web of Trust plugin.
 	 *
-	 * @param prefix
-	 *            The prefix to use to access the contexts
-	 * @param fields
-	 *            The fields to parse the contexts from
-	 * @return The parsed contexts
+	 * @return A future that is done once the plugin has answered
+	 * @throws PluginException
+	 *             if the plugin is not loaded
 	 */
-	private Set<String> parseContexts(String prefix, SimpleFieldSet fields) {
-		Set<String> contexts = new HashSet<String>();
-		int contextCounter = -1;
-		while (true) {
-			String context = fields.get(prefix + "Context" + ++contextCounter);
-			if (context == null) {
-				break;
-			}
-			contexts.add(context);
-		}
-		return contexts;
+	public Future<Void> pingAsync() throws PluginException {
+		return sendRequest(SimpleFieldSetConstructor.create().put("Message", "Ping").get(), new EmptyRequest("Pong"));
 	}
 
 	/**
-	 * Parses the properties from the given fields.
+	 * Waits for the result of the given future.
 	 *
-	 * @param prefix
-	 *            The prefix to use to access the properties
-	 * @param fields
-	 *            The fields to parse the properties from
-	 * @return The parsed properties
+	 * @param <T>
+	 *            The type of the result
+	 * @param future
+	 *            The future to wait for
+	 * @return The result of the future
+	 * @throws PluginException
+	 *             if the request failed, timed out, or was cancelled
 	 */
-	private Map<String, String> parseProperties(String prefix, SimpleFieldSet fields) {
-		Map<String, String> properties = new HashMap<String, String>();
-		int propertiesCounter = -1;
-		while (true) {
-			String propertyName = fields.get(prefix + "Property" + ++propertiesCounter + ".Name");
-			if (propertyName == null) {
-				break;
+	public static <T> T getResult(Future<T> future) throws PluginException {
+		try {
+			return future.get();
+		} catch (InterruptedException ie1) {
+			future.cancel(false);
+			throw new PluginException("Interrupted while waiting for reply!", ie1);
+		} catch (CancellationException ce1) {
+			throw new PluginException("Request was cancelled!", ce1);
+		} catch (ExecutionException ee1) {
+			if (ee1.getCause() instanceof PluginException) {
+				throw (PluginException) ee1.getCause();
 			}
-			String propertyValue = fields.get(prefix + "Property" + propertiesCounter + ".Value");
-			properties.put(propertyName, propertyValue);
+			throw new PluginException(ee1.getCause());
 		}
-		return properties;
 	}
 
+	//
+	// PRIVATE ACTIONS
+	//
+
 	/**
-	 * Sends a request containing the given fields and waits for the target
-	 * message.
+	 * Sends a request containing the given fields.
 	 *
+	 * @param <T>
+	 *            The type of the request’s result
 	 * @param fields
 	 *            The fields of the message
-	 * @param targetMessages
-	 *            The messages of the reply to wait for
-	 * @return The reply message
+	 * @param request
+	 *            The request that waits for the reply
+	 * @return The given request
 	 * @throws PluginException
 	 *             if the request could not be sent
 	 */
-	private Reply performRequest(SimpleFieldSet fields, String... targetMessages) throws PluginException {
-		return performRequest(fields, null, targetMessages);
+	private <T> Request<T> sendRequest(SimpleFieldSet fields, Request<T> request) throws PluginException {
+		return sendRequest(fields, null, request);
 	}
 
 	/**
-	 * Sends a request containing the given fields and waits for the target
-	 * message.
+	 * Sends a request containing the given fields and payload.
 	 *
+	 * @param <T>
+	 *            The type of the request’s result
 	 * @param fields
 	 *            The fields of the message
 	 * @param data
 	 *            The payload of the message
-	 * @param targetMessages
-	 *            The messages of the reply to wait for
-	 * @return The reply message
+	 * @param request
+	 *            The request that waits for the reply
+	 * @return The given request
 	 * @throws PluginException
 	 *             if the request could not be sent
 	 */
-	private Reply performRequest(SimpleFieldSet fields, Bucket data, String... targetMessages) throws PluginException {
-		@SuppressWarnings("synthetic-access")
-		Reply reply = new Reply();
-		for (String targetMessage : targetMessages) {
-			replies.put(targetMessage, reply);
-		}
-		replies.put("Error", reply);
-		synchronized (reply) {
-			pluginConnector.sendRequest(WOT_PLUGIN_NAME, PLUGIN_CONNECTION_IDENTIFIER, fields, data);
-			try {
-				long now = System.currentTimeMillis();
-				while ((reply.getFields() == null) && ((System.currentTimeMillis() - now) < 60000)) {
-					reply.wait(60000 - (System.currentTimeMillis() - now));
-				}
-				if (reply.getFields() == null) {
-					for (String targetMessage : targetMessages) {
-						replies.remove(targetMessage);
-					}
-					replies.remove("Error");
-					throw new PluginException("Timeout waiting for " + targetMessages[0] + "!");
-				}
-			} catch (InterruptedException ie1) {
-				logger.log(Level.WARNING, "Got interrupted while waiting for reply on " + targetMessages[0] + ".", ie1);
-			}
+	private <T> Request<T> sendRequest(SimpleFieldSet fields, Bucket data, final Request<T> request) throws PluginException {
+		removeExpiredRequests();
+		request.start(PLUGIN_CONNECTION_IDENTIFIER + "-" + requestCounter.incrementAndGet(), System.currentTimeMillis() + requestTimeout);
+		pendingRequests.put(request.getIdentifier(), request);
+		pluginConnector.addConnectorListener(WOT_PLUGIN_NAME, request.getIdentifier(), request);
+		try {
+			pluginConnector.sendRequest(WOT_PLUGIN_NAME, request.getIdentifier(), fields, data);
+		} catch (PluginException pe1) {
+			request.cancel(false);
+			throw pe1;
 		}
-		for (String targetMessage : targetMessages) {
-			replies.remove(targetMessage);
-		}
-		replies.remove("Error");
-		if ((reply.getFields() != null) && reply.getFields().get("Message").equals("Error")) {
-			throw new PluginException("Could not perform request for " + targetMessages[0]);
-		}
-		return reply;
+		return request;
 	}
 
-	//
-	// INTERFACE ConnectorListener
-	//
+	/**
+	 * Forgets about the request with the given identifier.
+	 *
+	 * @param request
+	 *            The request to forget
+	 */
+	private void removeRequest(Request<?> request) {
+		pendingRequests.remove(request.getIdentifier());
+		pluginConnector.removeConnectorListener(WOT_PLUGIN_NAME, request.getIdentifier(), request);
+	}
 
 	/**
-	 * {@inheritDoc}
+	 * Fails all pending requests whose timeout has expired. This catches
+	 * requests nobody waits for anymore.
 	 */
-	@Override
-	public void receivedReply(PluginConnector pluginConnector, SimpleFieldSet fields, Bucket data) {
-		String messageName = fields.get("Message");
-		logger.log(Level.FINEST, "Received Reply from Plugin: " + messageName);
-		Reply reply = replies.remove(messageName);
-		if (reply == null) {
-			logger.log(Level.FINE, "Not waiting for a “%s” message.", messageName);
-			return;
+	private void removeExpiredRequests() {
+		List<Request<?>> requests;
+		synchronized (pendingRequests) {
+			requests = new ArrayList<Request<?>>(pendingRequests.values());
 		}
-		synchronized (reply) {
-			reply.setFields(fields);
-			reply.setData(data);
-			reply.notify();
+		long now = System.currentTimeMillis();
+		for (Request<?> request : requests) {
+			request.checkTimeout(now);
 		}
 	}
 
 	/**
-	 * Container for the data of the reply from a plugin.
+	 * A request to the Web of Trust plugin. The request waits for a reply
+	 * with one of the given message names, or an “Error” message, and parses
+	 * the reply when its result is first retrieved.
 	 *
+	 * @param <T>
+	 *            The type of the result
 	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
 	 */
-	private static class Reply {
+	private abstract class Request<T> implements Future<T>, ConnectorListener {
+
+		/** The names of the messages that answer the request. */
+		private final String[] targetMessages;
+
+		/** The identifier of the request. */
+		private String identifier;
+
+		/** The time the request times out. */
+		private long timeoutTime;
+
+		/** Whether the request is done. */
+		/* synchronize access on this. */
+		private boolean done;
+
+		/** Whether the request was cancelled. */
+		/* synchronize access on this. */
+		private boolean cancelled;
 
 		/** The fields of the reply. */
+		/* synchronize access on this. */
 		private SimpleFieldSet fields;
 
-		/** The payload of the reply. */
-		private Bucket data;
+		/** Whether the reply has already been parsed. */
+		/* synchronize access on this. */
+		private boolean parsed;
+
+		/** The parsed result. */
+		/* synchronize access on this. */
+		private T result;
+
+		/** The exception that made the request fail. */
+		/* synchronize access on this. */
+		private PluginException exception;
 
 		/**
-		 * Returns the fields of the reply.
+		 * Creates a new request.
 		 *
-		 * @return The fields of the reply
+		 * @param targetMessages
+		 *            The names of the messages that answer the request
 		 */
-		public SimpleFieldSet getFields() {
-			return fields;
+		public Request(String... targetMessages) {
+			this.targetMessages = targetMessages;
 		}
 
+		//
+		// ACCESSORS
+		//
+
 		/**
-		 * Sets the fields of the reply.
+		 * Returns the identifier of the request.
+		 *
+		 * @return The identifier of the request
+		 */
+		public String getIdentifier() {
+			return identifier;
+		}
+
+		//
+		// ACTIONS
+		//
+
+		/**
+		 * Starts the request.
+		 *
+		 * @param identifier
+		 *            The identifier of the request
+		 * @param timeoutTime
+		 *            The time the request times out (in milliseconds since
+		 *            the epoch)
+		 */
+		public synchronized void start(String identifier, long timeoutTime) {
+			this.identifier = identifier;
+			this.timeoutTime = timeoutTime;
+		}
+
+		/**
+		 * Fails the request if it is not yet done and its timeout has expired.
+		 *
+		 * @param now
+		 *            The current time (in milliseconds since the epoch)
+		 */
+		@SuppressWarnings("synthetic-access")
+		public void checkTimeout(long now) {
+			synchronized (this) {
+				if (done || (now < timeoutTime)) {
+					return;
+				}
+				done = true;
+				exception = new PluginException("Timeout waiting for " + targetMessages[0] + "!");
+				notifyAll();
+			}
+			removeRequest(this);
+		}
+
+		/**
+		 * Parses the fields of the reply.
 		 *
 		 * @param fields
 		 *            The fields of the reply
+		 * @return The result of the request
+		 * @throws PluginException
+		 *             if the reply can not be parsed
+		 */
+		protected abstract T parseReply(SimpleFieldSet fields) throws PluginException;
+
+		//
+		// INTERFACE ConnectorListener
+		//
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public void receivedReply(PluginConnector pluginConnector, SimpleFieldSet fields, Bucket data) {
+			String messageName = fields.get("Message");
+			logger.log(Level.FINEST, "Received Reply from Plugin: %s (%s)", new Object[] { messageName, identifier });
+			if (!isTargetMessage(messageName)) {
+				logger.log(Level.FINE, "Not waiting for a “%s” message.", messageName);
+				return;
+			}
+			synchronized (this) {
+				if (done) {
+					return;
+				}
+				done = true;
+				if ("Error".equals(messageName)) {
+					exception = new PluginException("Could not perform request for " + targetMessages[0]);
+				} else {
+					this.fields = fields;
+				}
+				notifyAll();
+			}
+			removeRequest(this);
+		}
+
+		//
+		// INTERFACE Future
+		//
+
+		/**
+		 * {@inheritDoc}
 		 */
-		public void setFields(SimpleFieldSet fields) {
-			this.fields = fields;
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			synchronized (this) {
+				if (done) {
+					return false;
+				}
+				done = true;
+				cancelled = true;
+				notifyAll();
+			}
+			removeRequest(this);
+			return true;
 		}
 
 		/**
-		 * Returns the payload of the reply.
+		 * {@inheritDoc}
+		 */
+		@Override
+		public synchronized boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public synchronized boolean isDone() {
+			return done;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public T get() throws InterruptedException, ExecutionException {
+			try {
+				return get(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException te1) {
+				/* can not happen, the request times out first. */
+				throw new ExecutionException(te1);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			long now = System.currentTimeMillis();
+			long waitTime = unit.toMillis(timeout);
+			long endTime = ((Long.MAX_VALUE - now) > waitTime) ? (now + waitTime) : Long.MAX_VALUE;
+			synchronized (this) {
+				while (!done) {
+					now = System.currentTimeMillis();
+					if (now >= timeoutTime) {
+						break;
+					}
+					if (now >= endTime) {
+						throw new TimeoutException();
+					}
+					wait(Math.min(endTime, timeoutTime) - now);
+				}
+			}
+			checkTimeout(System.currentTimeMillis());
+			synchronized (this) {
+				if (cancelled) {
+					throw new CancellationException();
+				}
+				if (exception != null) {
+					throw new ExecutionException(exception);
+				}
+				if (!parsed) {
+					try {
+						result = parseReply(fields);
+					} catch (PluginException pe1) {
+						exception = pe1;
+						throw new ExecutionException(pe1);
+					} finally {
+						parsed = true;
+						fields = null;
+					}
+				}
+				return result;
+			}
+		}
+
+		//
+		// PRIVATE METHODS
+		//
+
+		/**
+		 * Returns whether a message with the given name answers the request.
+		 * An “Error” message always answers the request.
 		 *
-		 * @return The payload of the reply (may be {@code null})
+		 * @param messageName
+		 *            The name of the message
+		 * @return {@code true} if the message answers the request,
+		 *         {@code false} otherwise
 		 */
-		@SuppressWarnings("unused")
-		public Bucket getData() {
-			return data;
+		private boolean isTargetMessage(String messageName) {
+			if ("Error".equals(messageName)) {
+				return true;
+			}
+			for (String targetMessage : targetMessages) {
+				if (targetMessage.equals(messageName)) {
+					return true;
+				}
+			}
+			return false;
 		}
 
+	}
+
+	/**
+	 * A request that only waits for its reply but does not have a result.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private class EmptyRequest extends Request<Void> {
+
 		/**
-		 * Sets the payload of the reply.
+		 * Creates a new empty request.
 		 *
-		 * @param data
-		 *            The payload of the reply (may be {@code null})
+		 * @param targetMessages
+		 *            The names of the messages that answer the request
+		 */
+		public EmptyRequest(String... targetMessages) {
+			super(targetMessages);
+		}
+
+		/**
+		 * {@inheritDoc}
 		 */
-		public void setData(Bucket data) {
-			this.data = data;
+		@Override
+		protected Void parseReply(SimpleFieldSet fields) {
+			return null;
 		}
 
 	}
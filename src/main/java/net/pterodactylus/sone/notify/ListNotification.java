@@ -18,7 +18,9 @@
 package net.pterodactylus.sone.notify;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import net.pterodactylus.util.notify.TemplateNotification;
@@ -99,6 +101,26 @@ public class ListNotification<T> extends TemplateNotification {
 		touch();
 	}
 
+	/**
+	 * Removes all given elements from the list of new elements. The
+	 * notification is only touched once, and only if any element was removed.
+	 *
+	 * @param elements
+	 *            The elements to remove
+	 */
+	public void removeAll(Collection<? extends T> elements) {
+		if (elements.isEmpty()) {
+			return;
+		}
+		if (!this.elements.removeAll(new HashSet<T>(elements))) {
+			return;
+		}
+		if (this.elements.isEmpty()) {
+			dismiss();
+		}
+		touch();
+	}
+
 	//
 	// ABSTRACTNOTIFICATION METHODS
 	//
@@ -0,0 +1,158 @@
+/*
+ * Sone - NotificationTracker.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.notify;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.util.notify.Notification;
+
+/**
+ * Assigns {@link Core#getChangeSequence() change sequence numbers} to
+ * notifications so that clients can ask for all notifications that have
+ * changed or have been removed since a given change sequence number.
+ * Notifications do not announce their changes, so the tracker has to be
+ * {@link #update(Collection) updated} with the current notifications before
+ * it is queried.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class NotificationTracker {
+
+	/** The maximum number of removed notifications to remember. */
+	private static final int MAXIMUM_REMOVED_NOTIFICATIONS = 1000;
+
+	/** The core that supplies the change sequence numbers. */
+	private final Core core;
+
+	/** The current notifications, by ID. */
+	private final Map<String, Notification> notifications = new HashMap<String, Notification>();
+
+	/** The last updated times of the current notifications, by ID. */
+	private final Map<String, Long> lastUpdatedTimes = new HashMap<String, Long>();
+
+	/** The change sequence numbers of the current notifications, by ID. */
+	private final Map<String, Long> changeSequences = new HashMap<String, Long>();
+
+	/** The change sequence numbers of the removed notifications, by ID. */
+	private final Map<String, Long> removedChangeSequences = new LinkedHashMap<String, Long>();
+
+	/**
+	 * Creates a new notification tracker.
+	 *
+	 * @param core
+	 *            The core that supplies the change sequence numbers
+	 */
+	public NotificationTracker(Core core) {
+		this.core = core;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns all notifications that have changed after the given change
+	 * sequence number, sorted by their last update time.
+	 *
+	 * @param since
+	 *            The change sequence number
+	 * @return All notifications that have changed after the given change
+	 *         sequence number
+	 */
+	public synchronized List<Notification> getChangedNotifications(long since) {
+		List<Notification> changedNotifications = new ArrayList<Notification>();
+		for (Entry<String, Long> changeSequence : changeSequences.entrySet()) {
+			if (changeSequence.getValue() > since) {
+				changedNotifications.add(notifications.get(changeSequence.getKey()));
+			}
+		}
+		Collections.sort(changedNotifications, Notification.LAST_UPDATED_TIME_SORTER);
+		return changedNotifications;
+	}
+
+	/**
+	 * Returns the IDs of all notifications that have been removed after the
+	 * given change sequence number. Only the most recently removed
+	 * notifications are remembered.
+	 *
+	 * @param since
+	 *            The change sequence number
+	 * @return The IDs of all notifications that have been removed after the
+	 *         given change sequence number
+	 */
+	public synchronized List<String> getRemovedNotificationIds(long since) {
+		List<String> removedNotificationIds = new ArrayList<String>();
+		for (Entry<String, Long> removedChangeSequence : removedChangeSequences.entrySet()) {
+			if (removedChangeSequence.getValue() > since) {
+				removedNotificationIds.add(removedChangeSequence.getKey());
+			}
+		}
+		return removedNotificationIds;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Compares the given notifications with the notifications of the last
+	 * update. Notifications that are new or have been updated since, and
+	 * notifications that are gone, are assigned a new change sequence number.
+	 *
+	 * @param currentNotifications
+	 *            The current notifications
+	 */
+	public synchronized void update(Collection<Notification> currentNotifications) {
+		Set<String> removedNotificationIds = new HashSet<String>(notifications.keySet());
+		for (Notification notification : currentNotifications) {
+			String id = notification.getId();
+			removedNotificationIds.remove(id);
+			Long lastUpdatedTime = lastUpdatedTimes.get(id);
+			if ((lastUpdatedTime != null) && (lastUpdatedTime == notification.getLastUpdatedTime()) && (notifications.get(id) == notification)) {
+				continue;
+			}
+			notifications.put(id, notification);
+			lastUpdatedTimes.put(id, notification.getLastUpdatedTime());
+			changeSequences.put(id, core.nextChangeSequence());
+			removedChangeSequences.remove(id);
+		}
+		for (String removedNotificationId : removedNotificationIds) {
+			notifications.remove(removedNotificationId);
+			lastUpdatedTimes.remove(removedNotificationId);
+			changeSequences.remove(removedNotificationId);
+			removedChangeSequences.put(removedNotificationId, core.nextChangeSequence());
+		}
+		Iterator<String> removedNotificationIdIterator = removedChangeSequences.keySet().iterator();
+		while ((removedChangeSequences.size() > MAXIMUM_REMOVED_NOTIFICATIONS) && removedNotificationIdIterator.hasNext()) {
+			removedNotificationIdIterator.next();
+			removedNotificationIdIterator.remove();
+		}
+	}
+
+}
@@ -17,11 +17,8 @@
 
 package net.pterodactylus.sone.template;
 
-import java.util.Set;
-
 import net.pterodactylus.sone.core.Core;
 import net.pterodactylus.sone.freenet.wot.Identity;
-import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.util.template.Accessor;
 import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.ReflectionAccessor;
@@ -54,47 +51,9 @@ public class IdentityAccessor extends ReflectionAccessor {
 	public Object get(DataProvider dataProvider, Object object, String member) {
 		Identity identity = (Identity) object;
 		if ("uniqueNickname".equals(member)) {
-			int minLength = -1;
-			boolean found = false;
-			Set<OwnIdentity> ownIdentities = null;
-			ownIdentities = core.getIdentityManager().getAllOwnIdentities();
-			do {
-				boolean unique = true;
-				String abbreviatedWantedNickname = getAbbreviatedNickname(identity, ++minLength);
-				for (Identity ownIdentity : ownIdentities) {
-					if (ownIdentity.equals(identity)) {
-						continue;
-					}
-					String abbreviatedNickname = getAbbreviatedNickname(ownIdentity, minLength);
-					if (abbreviatedNickname.equals(abbreviatedWantedNickname)) {
-						unique = false;
-						break;
-					}
-				}
-				found = unique;
-			} while (!found && (minLength < 43));
-			return getAbbreviatedNickname(identity, minLength);
+			return core.getIdentityManager().getUniqueNickname(identity);
 		}
 		return super.get(dataProvider, object, member);
 	}
 
-	//
-	// PRIVATE METHODS
-	//
-
-	/**
-	 * Returns the nickname of the given identity, optionally appending the
-	 * first characters of the ID to it.
-	 *
-	 * @param identity
-	 *            The identity
-	 * @param length
-	 *            The number of characters from the beginning of the ID to
-	 *            append to the nickname
-	 * @return The nickname with optional ID appendage
-	 */
-	private String getAbbreviatedNickname(Identity identity, int length) {
-		return identity.getNickname() + ((length > 0) ? "@" + identity.getId().substring(0, length) : "");
-	}
-
 }
@@ -18,15 +18,13 @@
 package net.pterodactylus.sone.template;
 
 import java.io.IOException;
-import java.io.StringReader;
 
 import net.pterodactylus.sone.core.Core;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
-import net.pterodactylus.sone.text.FreenetLinkParser;
+import net.pterodactylus.sone.text.RenderedTextCache;
 import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.ReflectionAccessor;
-import net.pterodactylus.util.template.TemplateFactory;
 
 /**
  * Accessor for {@link Post} objects that adds additional properties:
@@ -39,8 +37,8 @@ import net.pterodactylus.util.template.TemplateFactory;
  */
 public class PostAccessor extends ReflectionAccessor {
 
-	/** Parser for Freenet links. */
-	private final FreenetLinkParser linkParser;
+	/** The cache for the rendered texts. */
+	private final RenderedTextCache textCache;
 
 	/** The core to get the replies from. */
 	private final Core core;
@@ -50,12 +48,12 @@ public class PostAccessor extends ReflectionAccessor {
 	 *
 	 * @param core
 	 *            The core to get the replies from
-	 * @param templateFactory
-	 *            The template factory for the text parser
+	 * @param textCache
+	 *            The cache for the rendered texts
 	 */
-	public PostAccessor(Core core, TemplateFactory templateFactory) {
+	public PostAccessor(Core core, RenderedTextCache textCache) {
 		this.core = core;
-		linkParser = new FreenetLinkParser(templateFactory);
+		this.textCache = textCache;
 	}
 
 	/**
@@ -79,7 +77,7 @@ public class PostAccessor extends ReflectionAccessor {
 				return null;
 			}
 			try {
-				return linkParser.parse(new StringReader(text));
+				return textCache.get(post.getId(), text);
 			} catch (IOException ioe1) {
 				/* ignore. */
 			}
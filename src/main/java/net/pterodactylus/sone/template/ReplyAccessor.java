@@ -18,16 +18,14 @@
 package net.pterodactylus.sone.template;
 
 import java.io.IOException;
-import java.io.StringReader;
 
 import net.pterodactylus.sone.core.Core;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
-import net.pterodactylus.sone.text.FreenetLinkParser;
+import net.pterodactylus.sone.text.RenderedTextCache;
 import net.pterodactylus.util.template.Accessor;
 import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.ReflectionAccessor;
-import net.pterodactylus.util.template.TemplateFactory;
 
 /**
  * {@link Accessor} implementation that adds a couple of properties to
@@ -37,8 +35,8 @@ import net.pterodactylus.util.template.TemplateFactory;
  */
 public class ReplyAccessor extends ReflectionAccessor {
 
-	/** Parser for Freenet links. */
-	private final FreenetLinkParser linkParser;
+	/** The cache for the rendered texts. */
+	private final RenderedTextCache textCache;
 
 	/** The core. */
 	private final Core core;
@@ -48,12 +46,12 @@ public class ReplyAccessor extends ReflectionAccessor {
 	 *
 	 * @param core
 	 *            The core
-	 * @param templateFactory
-	 *            The template factory for the text parser
+	 * @param textCache
+	 *            The cache for the rendered texts
 	 */
-	public ReplyAccessor(Core core, TemplateFactory templateFactory) {
+	public ReplyAccessor(Core core, RenderedTextCache textCache) {
 		this.core = core;
-		linkParser = new FreenetLinkParser(templateFactory);
+		this.textCache = textCache;
 	}
 
 	/**
@@ -72,7 +70,7 @@ public class ReplyAccessor extends ReflectionAccessor {
 		} else if (member.equals("text")) {
 			String text = reply.getText();
 			try {
-				return linkParser.parse(new StringReader(text));
+				return textCache.get(reply.getId(), text);
 			} catch (IOException ioe1) {
 				/* ignore. */
 			}
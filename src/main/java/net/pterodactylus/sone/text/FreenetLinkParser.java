@@ -20,14 +20,10 @@ package net.pterodactylus.sone.text;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import net.pterodactylus.util.logging.Logging;
-import net.pterodactylus.util.template.TemplateFactory;
 
 /**
  * {@link Parser} implementation that can recognize Freenet URIs.
@@ -39,8 +35,11 @@ public class FreenetLinkParser implements Parser {
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(FreenetLinkParser.class);
 
-	/** Pattern to detect whitespace. */
-	private static final Pattern whitespacePattern = Pattern.compile("[\\u000a\u0020\u00a0\u1680\u180e\u2000\u2001\u2002\u2003\u2004\u2005\u2006\u2007\u2008\u2009\u200a\u200b\u200c\u200d\u202f\u205f\u2060\u2800\u3000]");
+	/** All characters that end a link. */
+	private static final String WHITESPACE = "\n \u00a0\u1680\u180e\u2000\u2001\u2002\u2003\u2004\u2005\u2006\u2007\u2008\u2009\u200a\u200b\u200c\u200d\u202f\u205f\u2060\u2800\u3000";
+
+	/** The prefix that is removed in front of freenet links. */
+	private static final String FREENET_PREFIX = "freenet:";
 
 	/**
 	 * Enumeration for all recognized link types.
@@ -50,22 +49,25 @@ public class FreenetLinkParser implements Parser {
 	private enum LinkType {
 
 		/** Link is a KSK. */
-		KSK(true),
+		KSK("KSK@", true),
 
 		/** Link is a CHK. */
-		CHK(true),
+		CHK("CHK@", true),
 
 		/** Link is an SSK. */
-		SSK(true),
+		SSK("SSK@", true),
 
 		/** Link is a USK. */
-		USK(true),
+		USK("USK@", true),
 
 		/** Link is HTTP. */
-		HTTP(false),
+		HTTP("http://", false),
 
 		/** Link is HTTPS. */
-		HTTPS(false);
+		HTTPS("https://", false);
+
+		/** The prefix that starts a link of this type. */
+		private final String prefix;
 
 		/** Whether this link type links to freenet. */
 		private final boolean anonymous;
@@ -73,14 +75,26 @@ public class FreenetLinkParser implements Parser {
 		/**
 		 * Creates a new link type.
 		 *
+		 * @param prefix
+		 *            The prefix that starts a link of this type
 		 * @param anonymous
 		 *            {@code true} if this link type links to freenet,
 		 *            {@code false} otherwise
 		 */
-		private LinkType(boolean anonymous) {
+		private LinkType(String prefix, boolean anonymous) {
+			this.prefix = prefix;
 			this.anonymous = anonymous;
 		}
 
+		/**
+		 * Returns the prefix that starts a link of this type.
+		 *
+		 * @return The prefix of this link type
+		 */
+		public String getPrefix() {
+			return prefix;
+		}
+
 		/**
 		 * Returns whether this link type links anonymously to within freenet.
 		 *
@@ -93,107 +107,56 @@ public class FreenetLinkParser implements Parser {
 
 	}
 
-	/** The template factory. */
-	private final TemplateFactory templateFactory;
-
-	/**
-	 * Creates a new freenet link parser.
-	 *
-	 * @param templateFactory
-	 *            The template factory
-	 */
-	public FreenetLinkParser(TemplateFactory templateFactory) {
-		this.templateFactory = templateFactory;
-	}
-
 	//
 	// PART METHODS
 	//
 
 	/**
 	 * {@inheritDoc}
+	 * <p>
+	 * Every line is scanned only once, from left to right. Plain text between
+	 * links is collected across lines so that it results in a single part.
 	 */
 	@Override
-	@SuppressWarnings("null")
 	public Part parse(Reader source) throws IOException {
 		PartContainer parts = new PartContainer();
 		BufferedReader bufferedReader = (source instanceof BufferedReader) ? (BufferedReader) source : new BufferedReader(source);
+		StringBuilder plainText = new StringBuilder();
 		String line;
 		while ((line = bufferedReader.readLine()) != null) {
 			line = line.trim() + "\n";
-			while (line.length() > 0) {
-				int nextKsk = line.indexOf("KSK@");
-				int nextChk = line.indexOf("CHK@");
-				int nextSsk = line.indexOf("SSK@");
-				int nextUsk = line.indexOf("USK@");
-				int nextHttp = line.indexOf("http://");
-				int nextHttps = line.indexOf("https://");
-				if ((nextKsk == -1) && (nextChk == -1) && (nextSsk == -1) && (nextUsk == -1) && (nextHttp == -1) && (nextHttps == -1)) {
-					parts.add(createPlainTextPart(line));
-					break;
-				}
-				int next = Integer.MAX_VALUE;
-				LinkType linkType = null;
-				if ((nextKsk > -1) && (nextKsk < next)) {
-					next = nextKsk;
-					linkType = LinkType.KSK;
-				}
-				if ((nextChk > -1) && (nextChk < next)) {
-					next = nextChk;
-					linkType = LinkType.CHK;
-				}
-				if ((nextSsk > -1) && (nextSsk < next)) {
-					next = nextSsk;
-					linkType = LinkType.SSK;
+			int length = line.length();
+			int textStart = 0;
+			int position = 0;
+			while (position < length) {
+				LinkType linkType = getLinkType(line, position);
+				if (linkType == null) {
+					++position;
+					continue;
 				}
-				if ((nextUsk > -1) && (nextUsk < next)) {
-					next = nextUsk;
-					linkType = LinkType.USK;
+				int linkStart = position;
+				int linkEnd = findWhitespace(line, linkStart + linkType.getPrefix().length());
+				if (linkEnd == (linkStart + linkType.getPrefix().length())) {
+					/* only the prefix, treat as plain text. */
+					position = linkEnd;
+					continue;
 				}
-				if ((nextHttp > -1) && (nextHttp < next)) {
-					next = nextHttp;
-					linkType = LinkType.HTTP;
+				int textEnd = linkStart;
+				if (((linkStart - textStart) >= FREENET_PREFIX.length()) && line.startsWith(FREENET_PREFIX, linkStart - FREENET_PREFIX.length())) {
+					textEnd -= FREENET_PREFIX.length();
 				}
-				if ((nextHttps > -1) && (nextHttps < next)) {
-					next = nextHttps;
-					linkType = LinkType.HTTPS;
-				}
-				if ((next >= 8) && (line.substring(next - 8, next).equals("freenet:"))) {
-					next -= 8;
-					line = line.substring(0, next) + line.substring(next + 8);
-				}
-				Matcher matcher = whitespacePattern.matcher(line);
-				int nextSpace = matcher.find(next) ? matcher.start() : line.length();
-				if (nextSpace > (next + 4)) {
-					parts.add(createPlainTextPart(line.substring(0, next)));
-					String link = line.substring(next, nextSpace);
-					String name = link;
-					logger.log(Level.FINER, "Found link: %s", link);
-					logger.log(Level.FINEST, "Next: %d, CHK: %d, SSK: %d, USK: %d", new Object[] { next, nextChk, nextSsk, nextUsk });
-					if (((linkType == LinkType.CHK) || (linkType == LinkType.SSK) || (linkType == LinkType.USK)) && (link.length() > 98) && (link.charAt(47) == ',') && (link.charAt(91) == ',') && (link.charAt(99) == '/')) {
-						name = link.substring(0, 47) + "…" + link.substring(99);
-					} else if ((linkType == LinkType.HTTP) || (linkType == LinkType.HTTPS)) {
-						name = link.substring(linkType == LinkType.HTTP ? 7 : 8);
-						int firstSlash = name.indexOf('/');
-						int lastSlash = name.lastIndexOf('/');
-						if ((lastSlash - firstSlash) > 3) {
-							name = name.substring(0, firstSlash + 1) + "…" + name.substring(lastSlash);
-						}
-						if (name.endsWith("/")) {
-							name = name.substring(0, name.length() - 1);
-						}
-						if (((name.indexOf('/') > -1) && (name.indexOf('.') < name.lastIndexOf('.', name.indexOf('/'))) || ((name.indexOf('/') == -1) && (name.indexOf('.') < name.lastIndexOf('.')))) && name.startsWith("www.")) {
-							name = name.substring(4);
-						}
-						link = "?_CHECKED_HTTP_=" + link;
-					}
-					parts.add(createLinkPart(linkType.isAnonymous(), link, name));
-					line = line.substring(nextSpace);
-				} else {
-					parts.add(createPlainTextPart(line.substring(0, next + 4)));
-					line = line.substring(next + 4);
+				plainText.append(line, textStart, textEnd);
+				if (plainText.length() > 0) {
+					parts.add(new PlainTextPart(plainText.toString()));
+					plainText.setLength(0);
 				}
+				parts.add(createLinkPart(linkType, line.substring(linkStart, linkEnd)));
+				position = textStart = linkEnd;
 			}
+			plainText.append(line, textStart, length);
+		}
+		if (plainText.length() > 0) {
+			parts.add(new PlainTextPart(plainText.toString()));
 		}
 		return parts;
 	}
@@ -203,30 +166,86 @@ public class FreenetLinkParser implements Parser {
 	//
 
 	/**
-	 * Creates a new plain text part based on a template.
+	 * Returns the type of the link that starts at the given position.
+	 *
+	 * @param line
+	 *            The line to check
+	 * @param position
+	 *            The position to check
+	 * @return The type of the link starting at the given position, or
+	 *         {@code null} if no link starts at the given position
+	 */
+	private static LinkType getLinkType(String line, int position) {
+		switch (line.charAt(position)) {
+		case 'K':
+			return line.startsWith("KSK@", position) ? LinkType.KSK : null;
+		case 'C':
+			return line.startsWith("CHK@", position) ? LinkType.CHK : null;
+		case 'S':
+			return line.startsWith("SSK@", position) ? LinkType.SSK : null;
+		case 'U':
+			return line.startsWith("USK@", position) ? LinkType.USK : null;
+		case 'h':
+			if (line.startsWith("http://", position)) {
+				return LinkType.HTTP;
+			}
+			return line.startsWith("https://", position) ? LinkType.HTTPS : null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the position of the first whitespace character at or after the
+	 * given position.
 	 *
-	 * @param text
-	 *            The text to display
-	 * @return The part that displays the given text
+	 * @param line
+	 *            The line to search
+	 * @param position
+	 *            The position to start searching at
+	 * @return The position of the first whitespace character, or the length
+	 *         of the line if there is no whitespace
 	 */
-	private Part createPlainTextPart(String text) {
-		return new TemplatePart(templateFactory.createTemplate(new StringReader("<% text|html>"))).set("text", text);
+	private static int findWhitespace(String line, int position) {
+		int length = line.length();
+		for (int index = position; index < length; ++index) {
+			if (WHITESPACE.indexOf(line.charAt(index)) > -1) {
+				return index;
+			}
+		}
+		return length;
 	}
 
 	/**
-	 * Creates a new link part based on a template.
+	 * Creates a new link part, shortening the displayed name of the link.
 	 *
-	 * @param anonymous
-	 *            {@code true} if this link points to within freenet,
-	 *            {@code false} if it points to the internet
+	 * @param linkType
+	 *            The type of the link
 	 * @param link
-	 *            The target of the link
-	 * @param name
-	 *            The name of the link
+	 *            The link
 	 * @return The part that displays the link
 	 */
-	private Part createLinkPart(boolean anonymous, String link, String name) {
-		return new TemplatePart(templateFactory.createTemplate(new StringReader("<a <%if !anonymous>class=\"internet\" <%/if>href=\"<% link|html>\"><% name|html></a>"))).set("anonymous", anonymous).set("link", "/" + link).set("name", name);
+	private static Part createLinkPart(LinkType linkType, String link) {
+		logger.log(Level.FINER, "Found link: %s", link);
+		String name = link;
+		if (((linkType == LinkType.CHK) || (linkType == LinkType.SSK) || (linkType == LinkType.USK)) && (link.length() > 98) && (link.charAt(47) == ',') && (link.charAt(91) == ',') && (link.charAt(99) == '/')) {
+			name = link.substring(0, 47) + "…" + link.substring(99);
+		} else if ((linkType == LinkType.HTTP) || (linkType == LinkType.HTTPS)) {
+			name = link.substring(linkType.getPrefix().length());
+			int firstSlash = name.indexOf('/');
+			int lastSlash = name.lastIndexOf('/');
+			if ((lastSlash - firstSlash) > 3) {
+				name = name.substring(0, firstSlash + 1) + "…" + name.substring(lastSlash);
+			}
+			if (name.endsWith("/")) {
+				name = name.substring(0, name.length() - 1);
+			}
+			if (((name.indexOf('/') > -1) && (name.indexOf('.') < name.lastIndexOf('.', name.indexOf('/'))) || ((name.indexOf('/') == -1) && (name.indexOf('.') < name.lastIndexOf('.')))) && name.startsWith("www.")) {
+				name = name.substring(4);
+			}
+			link = "?_CHECKED_HTTP_=" + link;
+		}
+		return new LinkPart(linkType.isAnonymous(), "/" + link, name);
 	}
 
 }
@@ -0,0 +1,104 @@
+/*
+ * Sone - LinkPart.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.text;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link Part} implementation that writes a link.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class LinkPart implements Part {
+
+	/** Whether the link points to within freenet. */
+	private final boolean anonymous;
+
+	/** The target of the link. */
+	private final String link;
+
+	/** The name of the link. */
+	private final String name;
+
+	/**
+	 * Creates a new link part.
+	 *
+	 * @param anonymous
+	 *            {@code true} if the link points to within freenet,
+	 *            {@code false} if it points to the internet
+	 * @param link
+	 *            The target of the link
+	 * @param name
+	 *            The name of the link
+	 */
+	public LinkPart(boolean anonymous, String link, String name) {
+		this.anonymous = anonymous;
+		this.link = link;
+		this.name = name;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns whether the link points to within freenet.
+	 *
+	 * @return {@code true} if the link points to within freenet, {@code false}
+	 *         if it points to the internet
+	 */
+	public boolean isAnonymous() {
+		return anonymous;
+	}
+
+	/**
+	 * Returns the target of the link.
+	 *
+	 * @return The target of the link
+	 */
+	public String getLink() {
+		return link;
+	}
+
+	/**
+	 * Returns the name of the link.
+	 *
+	 * @return The name of the link
+	 */
+	public String getName() {
+		return name;
+	}
+
+	//
+	// PART METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void render(Writer writer) throws IOException {
+		writer.write(anonymous ? "<a href=\"" : "<a class=\"internet\" href=\"");
+		PlainTextPart.writeHtml(writer, link);
+		writer.write("\">");
+		PlainTextPart.writeHtml(writer, name);
+		writer.write("</a>");
+	}
+
+}
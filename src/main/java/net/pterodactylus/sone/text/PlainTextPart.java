@@ -0,0 +1,116 @@
+/*
+ * Sone - PlainTextPart.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.text;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link Part} implementation that writes plain text, escaping all characters
+ * that have a special meaning in HTML.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class PlainTextPart implements Part {
+
+	/** The text to write. */
+	private final String text;
+
+	/**
+	 * Creates a new plain text part.
+	 *
+	 * @param text
+	 *            The text to write
+	 */
+	public PlainTextPart(String text) {
+		this.text = text;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the text of this part.
+	 *
+	 * @return The text of this part
+	 */
+	public String getText() {
+		return text;
+	}
+
+	//
+	// PART METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void render(Writer writer) throws IOException {
+		writeHtml(writer, text);
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Writes the given text to the given writer, replacing all characters
+	 * that have a special meaning in HTML with their entities. Unchanged runs
+	 * of characters are written in one go.
+	 *
+	 * @param writer
+	 *            The writer to write to
+	 * @param text
+	 *            The text to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	static void writeHtml(Writer writer, String text) throws IOException {
+		int length = text.length();
+		int start = 0;
+		for (int index = 0; index < length; ++index) {
+			String entity;
+			switch (text.charAt(index)) {
+			case '&':
+				entity = "&amp;";
+				break;
+			case '<':
+				entity = "&lt;";
+				break;
+			case '>':
+				entity = "&gt;";
+				break;
+			case '"':
+				entity = "&quot;";
+				break;
+			case '\'':
+				entity = "&#39;";
+				break;
+			default:
+				continue;
+			}
+			writer.write(text, start, index - start);
+			writer.write(entity);
+			start = index + 1;
+		}
+		writer.write(text, start, length - start);
+	}
+
+}
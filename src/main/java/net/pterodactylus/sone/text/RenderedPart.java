@@ -1,5 +1,5 @@
 /*
- * Sone - TemplatePart.java - Copyright © 2010 David Roden
+ * Sone - RenderedPart.java - Copyright © 2010 David Roden
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -20,44 +20,38 @@ package net.pterodactylus.sone.text;
 import java.io.IOException;
 import java.io.Writer;
 
-import net.pterodactylus.util.template.Template;
-
 /**
- * {@link Part} implementation that is rendered using a {@link Template}.
+ * {@link Part} implementation that writes text that has already been rendered
+ * to HTML.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class TemplatePart implements Part {
+public class RenderedPart implements Part {
 
-	/** The template to render for this part. */
-	private final Template template;
+	/** The rendered HTML. */
+	private final String html;
 
 	/**
-	 * Creates a new template part.
+	 * Creates a new rendered part.
 	 *
-	 * @param template
-	 *            The template to render
+	 * @param html
+	 *            The rendered HTML
 	 */
-	public TemplatePart(Template template) {
-		this.template = template;
+	public RenderedPart(String html) {
+		this.html = html;
 	}
 
 	//
-	// ACTIONS
+	// ACCESSORS
 	//
 
 	/**
-	 * Sets a variable in the template.
+	 * Returns the rendered HTML.
 	 *
-	 * @param key
-	 *            The key of the variable
-	 * @param value
-	 *            The value of the variable
-	 * @return This template part (for method chaining)
+	 * @return The rendered HTML
 	 */
-	public TemplatePart set(String key, Object value) {
-		template.set(key, value);
-		return this;
+	public String getHtml() {
+		return html;
 	}
 
 	//
@@ -69,7 +63,19 @@ public class TemplatePart implements Part {
 	 */
 	@Override
 	public void render(Writer writer) throws IOException {
-		template.render(writer);
+		writer.write(html);
+	}
+
+	//
+	// OBJECT METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return html;
 	}
 
 }
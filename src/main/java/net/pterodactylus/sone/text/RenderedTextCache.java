@@ -0,0 +1,248 @@
+/*
+ * Sone - RenderedTextCache.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.text;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Caches the rendered HTML of post and reply texts so that the texts do not
+ * have to be parsed again every time a page shows them. Entries are stored by
+ * the ID of the post or reply and are only used as long as the text has not
+ * changed. The cache is limited by the total length of the stored HTML; when
+ * the limit is exceeded, the least recently used entries are evicted.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class RenderedTextCache {
+
+	/** The approximate overhead of a single entry, in characters. */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	/** The parser for the texts. */
+	private final Parser parser;
+
+	/** The maximum size of the cache, in characters. */
+	private final long maximumSize;
+
+	/** The cached entries, in access order. */
+	private final Map<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+	/** The current size of the cache, in characters. */
+	private long currentSize;
+
+	/** The number of cache hits. */
+	private long hits;
+
+	/** The number of cache misses. */
+	private long misses;
+
+	/**
+	 * Creates a new rendered text cache.
+	 *
+	 * @param parser
+	 *            The parser for the texts
+	 * @param maximumSize
+	 *            The maximum size of the cache, in characters
+	 */
+	public RenderedTextCache(Parser parser, long maximumSize) {
+		this.parser = parser;
+		this.maximumSize = maximumSize;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the current size of the cache.
+	 *
+	 * @return The current size of the cache, in characters
+	 */
+	public synchronized long getSize() {
+		return currentSize;
+	}
+
+	/**
+	 * Returns the number of cached texts.
+	 *
+	 * @return The number of cached texts
+	 */
+	public synchronized int getCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of requests that could be answered from the cache.
+	 *
+	 * @return The number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of requests that had to parse the text.
+	 *
+	 * @return The number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Returns the rendered text of the post or reply with the given ID. If the
+	 * cache does not contain the text, or contains a different text for the
+	 * given ID, the text is parsed and rendered, and the result is stored in
+	 * the cache.
+	 *
+	 * @param id
+	 *            The ID of the post or reply
+	 * @param text
+	 *            The text of the post or reply
+	 * @return The rendered text
+	 * @throws IOException
+	 *             if an I/O error occurs while parsing the text
+	 */
+	public Part get(String id, String text) throws IOException {
+		synchronized (this) {
+			CacheEntry cacheEntry = entries.get(id);
+			if ((cacheEntry != null) && cacheEntry.matches(text)) {
+				++hits;
+				return cacheEntry.getPart();
+			}
+			++misses;
+		}
+		/* render outside of the lock, parsing may take a while. */
+		StringWriter stringWriter = new StringWriter(text.length() + (text.length() >> 1));
+		parser.parse(new StringReader(text)).render(stringWriter);
+		CacheEntry cacheEntry = new CacheEntry(text, new RenderedPart(stringWriter.toString()));
+		if (cacheEntry.getSize() > maximumSize) {
+			return cacheEntry.getPart();
+		}
+		synchronized (this) {
+			CacheEntry oldEntry = entries.put(id, cacheEntry);
+			if (oldEntry != null) {
+				currentSize -= oldEntry.getSize();
+			}
+			currentSize += cacheEntry.getSize();
+			Iterator<Entry<String, CacheEntry>> entryIterator = entries.entrySet().iterator();
+			while ((currentSize > maximumSize) && entryIterator.hasNext()) {
+				Entry<String, CacheEntry> eldestEntry = entryIterator.next();
+				currentSize -= eldestEntry.getValue().getSize();
+				entryIterator.remove();
+			}
+		}
+		return cacheEntry.getPart();
+	}
+
+	/**
+	 * Removes the rendered text of the post or reply with the given ID from
+	 * the cache.
+	 *
+	 * @param id
+	 *            The ID of the post or reply
+	 */
+	public synchronized void remove(String id) {
+		CacheEntry cacheEntry = entries.remove(id);
+		if (cacheEntry != null) {
+			currentSize -= cacheEntry.getSize();
+		}
+	}
+
+	/**
+	 * Removes all rendered texts from the cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		currentSize = 0;
+	}
+
+	/**
+	 * A single entry of the cache.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class CacheEntry {
+
+		/** The source text. */
+		private final String text;
+
+		/** The hash code of the source text. */
+		private final int textHash;
+
+		/** The rendered text. */
+		private final RenderedPart part;
+
+		/**
+		 * Creates a new cache entry.
+		 *
+		 * @param text
+		 *            The source text
+		 * @param part
+		 *            The rendered text
+		 */
+		public CacheEntry(String text, RenderedPart part) {
+			this.text = text;
+			this.textHash = text.hashCode();
+			this.part = part;
+		}
+
+		/**
+		 * Returns the rendered text.
+		 *
+		 * @return The rendered text
+		 */
+		public RenderedPart getPart() {
+			return part;
+		}
+
+		/**
+		 * Returns the size of this entry. The source text is counted as well
+		 * because the entry keeps a reference to it.
+		 *
+		 * @return The size of this entry, in characters
+		 */
+		public long getSize() {
+			return text.length() + part.getHtml().length() + ENTRY_OVERHEAD;
+		}
+
+		/**
+		 * Returns whether this entry was created from the given text.
+		 *
+		 * @param text
+		 *            The text to check
+		 * @return {@code true} if this entry was created from the given text,
+		 *         {@code false} otherwise
+		 */
+		public boolean matches(String text) {
+			return (textHash == text.hashCode()) && this.text.equals(text);
+		}
+
+	}
+
+}
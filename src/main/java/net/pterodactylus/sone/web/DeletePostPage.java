@@ -20,6 +20,7 @@ package net.pterodactylus.sone.web;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.page.Page.Request.Method;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 
 /**
@@ -49,14 +50,14 @@ public class DeletePostPage extends SoneTemplatePage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void processTemplate(Request request, Template template) throws RedirectException {
-		super.processTemplate(request, template);
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
+		super.processTemplate(request, dataProvider);
 		if (request.getMethod() == Method.GET) {
 			String postId = request.getHttpRequest().getParam("post");
 			String returnPage = request.getHttpRequest().getParam("returnPage");
 			Post post = webInterface.getCore().getPost(postId);
-			template.set("post", post);
-			template.set("returnPage", returnPage);
+			dataProvider.setData("post", post);
+			dataProvider.setData("returnPage", returnPage);
 			return;
 		} else if (request.getMethod() == Method.POST) {
 			String postId = request.getHttpRequest().getPartAsStringFailsafe("post", 36);
@@ -67,13 +68,13 @@ public class DeletePostPage extends SoneTemplatePage {
 				throw new RedirectException("noPermission.html");
 			}
 			if (request.getHttpRequest().isPartSet("confirmDelete")) {
-				currentSone.removePost(post);
+				webInterface.getCore().deletePost(post);
 				throw new RedirectException(returnPage);
 			} else if (request.getHttpRequest().isPartSet("abortDelete")) {
 				throw new RedirectException(returnPage);
 			}
-			template.set("post", post);
-			template.set("returnPage", returnPage);
+			dataProvider.setData("post", post);
+			dataProvider.setData("returnPage", returnPage);
 		}
 	}
 
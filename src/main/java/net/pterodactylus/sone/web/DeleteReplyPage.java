@@ -20,6 +20,7 @@ package net.pterodactylus.sone.web;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.page.Page.Request.Method;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 
 /**
@@ -49,8 +50,8 @@ public class DeleteReplyPage extends SoneTemplatePage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void processTemplate(Request request, Template template) throws RedirectException {
-		super.processTemplate(request, template);
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
+		super.processTemplate(request, dataProvider);
 		String replyId = request.getHttpRequest().getPartAsStringFailsafe("reply", 36);
 		Reply reply = webInterface.getCore().getReply(replyId);
 		String returnPage = request.getHttpRequest().getPartAsStringFailsafe("returnPage", 256);
@@ -66,8 +67,8 @@ public class DeleteReplyPage extends SoneTemplatePage {
 				throw new RedirectException(returnPage);
 			}
 		}
-		template.set("reply", reply);
-		template.set("returnPage", returnPage);
+		dataProvider.setData("reply", reply);
+		dataProvider.setData("returnPage", returnPage);
 	}
 
 }
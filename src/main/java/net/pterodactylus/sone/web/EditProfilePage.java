@@ -21,6 +21,7 @@ import net.pterodactylus.sone.data.Profile;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.page.Page.Request.Method;
 import net.pterodactylus.util.number.Numbers;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 import freenet.clients.http.ToadletContext;
 
@@ -51,8 +52,8 @@ public class EditProfilePage extends SoneTemplatePage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void processTemplate(Request request, Template template) throws RedirectException {
-		super.processTemplate(request, template);
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
+		super.processTemplate(request, dataProvider);
 		ToadletContext toadletContenxt = request.getToadletContext();
 		Sone currentSone = getCurrentSone(toadletContenxt);
 		Profile profile = currentSone.getProfile();
@@ -75,15 +76,16 @@ public class EditProfilePage extends SoneTemplatePage {
 			profile.setBirthDay(birthDay).setBirthMonth(birthMonth).setBirthYear(birthYear);
 			if (profile.isModified()) {
 				currentSone.setProfile(profile);
+				webInterface.getCore().saveSone(currentSone);
 			}
 			throw new RedirectException("index.html");
 		}
-		template.set("firstName", firstName);
-		template.set("middleName", middleName);
-		template.set("lastName", lastName);
-		template.set("birthDay", birthDay);
-		template.set("birthMonth", birthMonth);
-		template.set("birthYear", birthYear);
+		dataProvider.setData("firstName", firstName);
+		dataProvider.setData("middleName", middleName);
+		dataProvider.setData("lastName", lastName);
+		dataProvider.setData("birthDay", birthDay);
+		dataProvider.setData("birthMonth", birthMonth);
+		dataProvider.setData("birthYear", birthYear);
 	}
 
 }
@@ -18,12 +18,13 @@
 package net.pterodactylus.sone.web;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import net.pterodactylus.sone.data.Post;
-import net.pterodactylus.sone.data.Reply;
+import net.pterodactylus.sone.data.PostPage;
 import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.util.number.Numbers;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 
 /**
@@ -34,6 +35,9 @@ import net.pterodactylus.util.template.Template;
  */
 public class IndexPage extends SoneTemplatePage {
 
+	/** The number of posts per page. */
+	private static final int POSTS_PER_PAGE = 25;
+
 	/**
 	 * @param template
 	 *            The template to render
@@ -52,34 +56,29 @@ public class IndexPage extends SoneTemplatePage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void processTemplate(Request request, Template template) throws RedirectException {
-		super.processTemplate(request, template);
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
+		super.processTemplate(request, dataProvider);
 		Sone sone = getCurrentSone(request.getToadletContext());
-		List<Post> allPosts = new ArrayList<Post>();
-		allPosts.addAll(sone.getPosts());
+		List<Sone> sones = new ArrayList<Sone>();
+		sones.add(sone);
 		for (String friendSoneId : sone.getFriends()) {
 			if (!webInterface.getCore().hasSone(friendSoneId)) {
 				continue;
 			}
-			allPosts.addAll(webInterface.getCore().getSone(friendSoneId).getPosts());
+			sones.add(webInterface.getCore().getSone(friendSoneId));
 		}
-		Collections.sort(allPosts, Post.TIME_COMPARATOR);
-		template.set("posts", allPosts);
+		int page = Numbers.safeParseInteger(request.getHttpRequest().getParam("page"), 0);
+		dataProvider.setData("pagination", webInterface.getCore().getPostPage(sones, page, POSTS_PER_PAGE));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void postProcess(Request request, Template template) {
-		@SuppressWarnings("unchecked")
-		List<Post> posts = (List<Post>) template.get("posts");
-		for (Post post : posts) {
-			webInterface.getCore().markPostKnown(post);
-			for (Reply reply : webInterface.getCore().getReplies(post)) {
-				webInterface.getCore().markReplyKnown(reply);
-			}
-		}
+	protected void postProcess(Request request, DataProvider dataProvider) {
+		PostPage postPage = (PostPage) dataProvider.getData("pagination");
+		List<Post> posts = postPage.getItems();
+		webInterface.getCore().markKnown(posts, webInterface.getCore().getReplies(posts));
 	}
 
 }
@@ -20,6 +20,7 @@ package net.pterodactylus.sone.web;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.page.Page.Request.Method;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 
 /**
@@ -49,8 +50,8 @@ public class LikePage extends SoneTemplatePage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void processTemplate(Request request, Template template) throws RedirectException {
-		super.processTemplate(request, template);
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
+		super.processTemplate(request, dataProvider);
 		if (request.getMethod() == Method.POST) {
 			String type=request.getHttpRequest().getPartAsStringFailsafe("type", 16);
 			String id = request.getHttpRequest().getPartAsStringFailsafe(type, 36);
@@ -61,6 +62,7 @@ public class LikePage extends SoneTemplatePage {
 			} else if ("reply".equals(type)) {
 				currentSone.addLikedReplyId(id);
 			}
+			webInterface.getCore().saveSone(currentSone);
 			throw new RedirectException(returnPage);
 		}
 	}
@@ -17,9 +17,12 @@
 
 package net.pterodactylus.sone.web;
 
+import net.pterodactylus.sone.core.InsertScheduler;
 import net.pterodactylus.sone.core.Options;
+import net.pterodactylus.sone.freenet.wot.IdentityManager;
 import net.pterodactylus.sone.web.page.Page.Request.Method;
 import net.pterodactylus.util.number.Numbers;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 
 /**
@@ -49,12 +52,22 @@ public class OptionsPage extends SoneTemplatePage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void processTemplate(Request request, Template template) throws RedirectException {
-		super.processTemplate(request, template);
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
+		super.processTemplate(request, dataProvider);
 		Options options = webInterface.getCore().getOptions();
 		if (request.getMethod() == Method.POST) {
 			Integer insertionDelay = Numbers.safeParseInteger(request.getHttpRequest().getPartAsStringFailsafe("insertion-delay", 16));
 			options.getIntegerOption("InsertionDelay").set(insertionDelay);
+			Integer insertConcurrency = Numbers.safeParseInteger(request.getHttpRequest().getPartAsStringFailsafe("insert-concurrency", 16));
+			options.getIntegerOption("InsertConcurrency").set(insertConcurrency);
+			Integer insertBandwidth = Numbers.safeParseInteger(request.getHttpRequest().getPartAsStringFailsafe("insert-bandwidth", 16));
+			options.getIntegerOption("InsertBandwidth").set(insertBandwidth);
+			Integer minimumPollInterval = Numbers.safeParseInteger(request.getHttpRequest().getPartAsStringFailsafe("minimum-poll-interval", 16));
+			options.getIntegerOption("MinimumPollInterval").set(minimumPollInterval);
+			Integer maximumPollInterval = Numbers.safeParseInteger(request.getHttpRequest().getPartAsStringFailsafe("maximum-poll-interval", 16));
+			options.getIntegerOption("MaximumPollInterval").set(maximumPollInterval);
+			Integer webOfTrustRequestTimeout = Numbers.safeParseInteger(request.getHttpRequest().getPartAsStringFailsafe("wot-request-timeout", 16));
+			options.getIntegerOption("WebOfTrustRequestTimeout").set(webOfTrustRequestTimeout);
 			boolean soneRescueMode = Boolean.parseBoolean(request.getHttpRequest().getPartAsStringFailsafe("sone-rescue-mode", 5));
 			options.getBooleanOption("SoneRescueMode").set(soneRescueMode);
 			boolean clearOnNextRestart = Boolean.parseBoolean(request.getHttpRequest().getPartAsStringFailsafe("clear-on-next-restart", 5));
@@ -64,10 +77,25 @@ public class OptionsPage extends SoneTemplatePage {
 			webInterface.getCore().saveConfiguration();
 			throw new RedirectException(getPath());
 		}
-		template.set("insertion-delay", options.getIntegerOption("InsertionDelay").get());
-		template.set("sone-rescue-mode", options.getBooleanOption("SoneRescueMode").get());
-		template.set("clear-on-next-restart", options.getBooleanOption("ClearOnNextRestart").get());
-		template.set("really-clear-on-next-restart", options.getBooleanOption("ReallyClearOnNextRestart").get());
+		dataProvider.setData("insertion-delay", options.getIntegerOption("InsertionDelay").get());
+		dataProvider.setData("insert-concurrency", options.getIntegerOption("InsertConcurrency").get());
+		dataProvider.setData("insert-bandwidth", options.getIntegerOption("InsertBandwidth").get());
+		InsertScheduler insertScheduler = webInterface.getCore().getInsertScheduler();
+		dataProvider.setData("queued-inserts", insertScheduler.getQueuedInserts());
+		dataProvider.setData("scheduled-inserts", insertScheduler.getScheduledInserts());
+		dataProvider.setData("running-inserts", insertScheduler.getRunningInserts());
+		dataProvider.setData("current-insert-wait-time", insertScheduler.getCurrentWaitTime() / 1000);
+		dataProvider.setData("average-insert-wait-time", insertScheduler.getAverageWaitTime() / 1000);
+		dataProvider.setData("minimum-poll-interval", options.getIntegerOption("MinimumPollInterval").get());
+		dataProvider.setData("maximum-poll-interval", options.getIntegerOption("MaximumPollInterval").get());
+		dataProvider.setData("wot-request-timeout", options.getIntegerOption("WebOfTrustRequestTimeout").get());
+		IdentityManager identityManager = webInterface.getCore().getIdentityManager();
+		dataProvider.setData("poll-interval", identityManager.getPollInterval() / 1000);
+		dataProvider.setData("last-poll-duration", identityManager.getLastPollDuration());
+		dataProvider.setData("last-poll-identities", identityManager.getLastPollIdentities());
+		dataProvider.setData("sone-rescue-mode", options.getBooleanOption("SoneRescueMode").get());
+		dataProvider.setData("clear-on-next-restart", options.getBooleanOption("ClearOnNextRestart").get());
+		dataProvider.setData("really-clear-on-next-restart", options.getBooleanOption("ReallyClearOnNextRestart").get());
 	}
 
 }
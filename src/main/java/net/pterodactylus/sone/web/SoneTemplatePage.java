@@ -23,6 +23,7 @@ import java.util.Collection;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.page.Page;
 import net.pterodactylus.sone.web.page.TemplatePage;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 import freenet.clients.http.SessionManager.Session;
 import freenet.clients.http.ToadletContext;
@@ -184,10 +185,10 @@ public class SoneTemplatePage extends TemplatePage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void processTemplate(Request request, Template template) throws RedirectException {
-		super.processTemplate(request, template);
-		template.set("currentSone", getCurrentSone(request.getToadletContext()));
-		template.set("request", request);
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
+		super.processTemplate(request, dataProvider);
+		dataProvider.setData("currentSone", getCurrentSone(request.getToadletContext()));
+		dataProvider.setData("request", request);
 	}
 
 	/**
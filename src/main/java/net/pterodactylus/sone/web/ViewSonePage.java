@@ -17,11 +17,14 @@
 
 package net.pterodactylus.sone.web;
 
+import java.util.Collections;
 import java.util.List;
 
 import net.pterodactylus.sone.data.Post;
-import net.pterodactylus.sone.data.Reply;
+import net.pterodactylus.sone.data.PostPage;
 import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.util.number.Numbers;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 
 /**
@@ -31,6 +34,9 @@ import net.pterodactylus.util.template.Template;
  */
 public class ViewSonePage extends SoneTemplatePage {
 
+	/** The number of posts per page. */
+	private static final int POSTS_PER_PAGE = 25;
+
 	/**
 	 * Creates a new “view Sone” page.
 	 *
@@ -51,26 +57,28 @@ public class ViewSonePage extends SoneTemplatePage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void processTemplate(Request request, Template template) throws RedirectException {
-		super.processTemplate(request, template);
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
+		super.processTemplate(request, dataProvider);
 		String soneId = request.getHttpRequest().getParam("sone");
 		Sone sone = webInterface.getCore().getSone(soneId, false);
-		template.set("sone", sone);
+		dataProvider.setData("sone", sone);
+		if (sone != null) {
+			int page = Numbers.safeParseInteger(request.getHttpRequest().getParam("postPage"), 0);
+			dataProvider.setData("pagination", webInterface.getCore().getPostPage(Collections.singleton(sone), page, POSTS_PER_PAGE));
+		}
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void postProcess(Request request, Template template) {
-		Sone sone = (Sone) template.get("sone");
-		List<Post> posts = sone.getPosts();
-		for (Post post : posts) {
-			webInterface.getCore().markPostKnown(post);
-			for (Reply reply : webInterface.getCore().getReplies(post)) {
-				webInterface.getCore().markReplyKnown(reply);
-			}
+	protected void postProcess(Request request, DataProvider dataProvider) {
+		PostPage postPage = (PostPage) dataProvider.getData("pagination");
+		if (postPage == null) {
+			return;
 		}
+		List<Post> posts = postPage.getItems();
+		webInterface.getCore().markKnown(posts, webInterface.getCore().getReplies(posts));
 	}
 
 }
@@ -42,6 +42,7 @@ import net.pterodactylus.sone.freenet.L10nFilter;
 import net.pterodactylus.sone.freenet.wot.Identity;
 import net.pterodactylus.sone.main.SonePlugin;
 import net.pterodactylus.sone.notify.ListNotification;
+import net.pterodactylus.sone.notify.NotificationTracker;
 import net.pterodactylus.sone.template.CollectionAccessor;
 import net.pterodactylus.sone.template.CssClassNameFilter;
 import net.pterodactylus.sone.template.GetPagePlugin;
@@ -52,6 +53,8 @@ import net.pterodactylus.sone.template.ReplyAccessor;
 import net.pterodactylus.sone.template.RequestChangeFilter;
 import net.pterodactylus.sone.template.SoneAccessor;
 import net.pterodactylus.sone.template.SubstringFilter;
+import net.pterodactylus.sone.text.FreenetLinkParser;
+import net.pterodactylus.sone.text.RenderedTextCache;
 import net.pterodactylus.sone.web.ajax.CreatePostAjaxPage;
 import net.pterodactylus.sone.web.ajax.CreateReplyAjaxPage;
 import net.pterodactylus.sone.web.ajax.DeletePostAjaxPage;
@@ -60,6 +63,8 @@ import net.pterodactylus.sone.web.ajax.DismissNotificationAjaxPage;
 import net.pterodactylus.sone.web.ajax.FollowSoneAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetLikesAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetPostAjaxPage;
+import net.pterodactylus.sone.web.ajax.GetPostsAjaxPage;
+import net.pterodactylus.sone.web.ajax.GetRepliesAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetReplyAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetStatusAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetTranslationPage;
@@ -67,12 +72,14 @@ import net.pterodactylus.sone.web.ajax.LikeAjaxPage;
 import net.pterodactylus.sone.web.ajax.LockSoneAjaxPage;
 import net.pterodactylus.sone.web.ajax.MarkPostAsKnownPage;
 import net.pterodactylus.sone.web.ajax.MarkReplyAsKnownPage;
+import net.pterodactylus.sone.web.ajax.PollStatusAjaxPage;
 import net.pterodactylus.sone.web.ajax.UnfollowSoneAjaxPage;
 import net.pterodactylus.sone.web.ajax.UnlikeAjaxPage;
 import net.pterodactylus.sone.web.ajax.UnlockSoneAjaxPage;
 import net.pterodactylus.sone.web.page.PageToadlet;
 import net.pterodactylus.sone.web.page.PageToadletFactory;
 import net.pterodactylus.sone.web.page.StaticPage;
+import net.pterodactylus.util.io.Closer;
 import net.pterodactylus.util.logging.Logging;
 import net.pterodactylus.util.notify.Notification;
 import net.pterodactylus.util.notify.NotificationManager;
@@ -105,6 +112,9 @@ public class WebInterface implements CoreListener {
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(WebInterface.class);
 
+	/** The maximum size of the rendered text cache, in characters. */
+	private static final long TEXT_CACHE_SIZE = 2 * 1024 * 1024;
+
 	/** The notification manager. */
 	private final NotificationManager notificationManager = new NotificationManager();
 
@@ -120,6 +130,9 @@ public class WebInterface implements CoreListener {
 	/** The template factory. */
 	private DefaultTemplateFactory templateFactory;
 
+	/** The cache for the rendered texts of posts and replies. */
+	private RenderedTextCache textCache;
+
 	/** The “new Sone” notification. */
 	private final ListNotification<Sone> newSoneNotification;
 
@@ -141,6 +154,15 @@ public class WebInterface implements CoreListener {
 	/** The “Sone locked” notification. */
 	private final ListNotification<Sone> lockedSonesNotification;
 
+	/** The change sequence numbers of the new posts. */
+	private final Map<Post, Long> newPostChangeSequences = Collections.synchronizedMap(new HashMap<Post, Long>());
+
+	/** The change sequence numbers of the new replies. */
+	private final Map<Reply, Long> newReplyChangeSequences = Collections.synchronizedMap(new HashMap<Reply, Long>());
+
+	/** The notification tracker. */
+	private final NotificationTracker notificationTracker;
+
 	/**
 	 * Creates a new web interface.
 	 *
@@ -155,8 +177,10 @@ public class WebInterface implements CoreListener {
 		templateFactory.addAccessor(Object.class, new ReflectionAccessor());
 		templateFactory.addAccessor(Collection.class, new CollectionAccessor());
 		templateFactory.addAccessor(Sone.class, new SoneAccessor(getCore()));
-		templateFactory.addAccessor(Post.class, new PostAccessor(getCore(), templateFactory));
-		templateFactory.addAccessor(Reply.class, new ReplyAccessor(getCore(), templateFactory));
+		textCache = new RenderedTextCache(new FreenetLinkParser(), TEXT_CACHE_SIZE);
+		templateFactory.addAccessor(Post.class, new PostAccessor(getCore(), textCache));
+		templateFactory.addAccessor(Reply.class, new ReplyAccessor(getCore(), textCache));
+		notificationTracker = new NotificationTracker(getCore());
 		templateFactory.addAccessor(Identity.class, new IdentityAccessor(getCore()));
 		templateFactory.addAccessor(NotificationManager.class, new NotificationManagerAccessor());
 		templateFactory.addFilter("date", new DateFilter());
@@ -309,6 +333,17 @@ public class WebInterface implements CoreListener {
 		return notificationManager;
 	}
 
+	/**
+	 * Returns the notification tracker. It has to be updated with the current
+	 * notifications of the {@link #getNotifications() notification manager}
+	 * before it is used.
+	 *
+	 * @return The notification tracker
+	 */
+	public NotificationTracker getNotificationTracker() {
+		return notificationTracker;
+	}
+
 	/**
 	 * Returns the l10n helper of the node.
 	 *
@@ -356,6 +391,44 @@ public class WebInterface implements CoreListener {
 		return new HashSet<Reply>(newReplyNotification.getElements());
 	}
 
+	/**
+	 * Returns the posts that have been announced as new in the
+	 * {@link #newPostNotification} after the given change sequence number.
+	 *
+	 * @param since
+	 *            The change sequence number
+	 * @return The new posts
+	 */
+	public Set<Post> getNewPosts(long since) {
+		Set<Post> newPosts = new HashSet<Post>();
+		for (Post post : newPostNotification.getElements()) {
+			Long changeSequence = newPostChangeSequences.get(post);
+			if ((changeSequence == null) || (changeSequence > since)) {
+				newPosts.add(post);
+			}
+		}
+		return newPosts;
+	}
+
+	/**
+	 * Returns the replies that have been announced as new in the
+	 * {@link #newReplyNotification} after the given change sequence number.
+	 *
+	 * @param since
+	 *            The change sequence number
+	 * @return The new replies
+	 */
+	public Set<Reply> getNewReplies(long since) {
+		Set<Reply> newReplies = new HashSet<Reply>();
+		for (Reply reply : newReplyNotification.getElements()) {
+			Long changeSequence = newReplyChangeSequences.get(reply);
+			if ((changeSequence == null) || (changeSequence > since)) {
+				newReplies.add(reply);
+			}
+		}
+		return newReplies;
+	}
+
 	/**
 	 * Sets whether the current start of the plugin is the first start. It is
 	 * considered a first start if the configuration file does not exist.
@@ -514,11 +587,14 @@ public class WebInterface implements CoreListener {
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new StaticPage("images/", "/static/images/", "image/png")));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetTranslationPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetStatusAjaxPage(this)));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new PollStatusAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new DismissNotificationAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new CreatePostAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new CreateReplyAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetReplyAjaxPage(this, replyTemplate)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetPostAjaxPage(this, postTemplate)));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetRepliesAjaxPage(this, replyTemplate)));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetPostsAjaxPage(this, postTemplate)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new MarkPostAsKnownPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new MarkReplyAsKnownPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new DeletePostAjaxPage(this)));
@@ -609,7 +685,9 @@ public class WebInterface implements CoreListener {
 	 */
 	@Override
 	public void newPostFound(Post post) {
+		/* add first; an unstamped post is reported to every status request. */
 		newPostNotification.add(post);
+		newPostChangeSequences.put(post, getCore().nextChangeSequence());
 		if (!hasFirstStartNotification()) {
 			notificationManager.addNotification(newPostNotification);
 		} else {
@@ -625,7 +703,9 @@ public class WebInterface implements CoreListener {
 		if (reply.getPost().getSone() == null) {
 			return;
 		}
+		/* add first; an unstamped reply is reported to every status request. */
 		newReplyNotification.add(reply);
+		newReplyChangeSequences.put(reply, getCore().nextChangeSequence());
 		if (!hasFirstStartNotification()) {
 			notificationManager.addNotification(newReplyNotification);
 		} else {
@@ -647,6 +727,7 @@ public class WebInterface implements CoreListener {
 	@Override
 	public void markPostKnown(Post post) {
 		newPostNotification.remove(post);
+		newPostChangeSequences.remove(post);
 	}
 
 	/**
@@ -655,6 +736,18 @@ public class WebInterface implements CoreListener {
 	@Override
 	public void markReplyKnown(Reply reply) {
 		newReplyNotification.remove(reply);
+		newReplyChangeSequences.remove(reply);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void markKnown(Collection<Post> posts, Collection<Reply> replies) {
+		newPostNotification.removeAll(posts);
+		newReplyNotification.removeAll(replies);
+		newPostChangeSequences.keySet().removeAll(posts);
+		newReplyChangeSequences.keySet().removeAll(replies);
 	}
 
 	/**
@@ -663,6 +756,8 @@ public class WebInterface implements CoreListener {
 	@Override
 	public void postRemoved(Post post) {
 		newPostNotification.remove(post);
+		newPostChangeSequences.remove(post);
+		textCache.remove(post.getId());
 	}
 
 	/**
@@ -671,6 +766,8 @@ public class WebInterface implements CoreListener {
 	@Override
 	public void replyRemoved(Reply reply) {
 		newReplyNotification.remove(reply);
+		newReplyChangeSequences.remove(reply);
+		textCache.remove(reply.getId());
 	}
 
 	/**
@@ -703,7 +800,9 @@ public class WebInterface implements CoreListener {
 	/**
 	 * Template provider implementation that uses
 	 * {@link WebInterface#createReader(String)} to load templates for
-	 * inclusion.
+	 * inclusion. Every template is only loaded and parsed once; the parsed
+	 * template is shared by all renderings that include it, which only read
+	 * it and supply their own data.
 	 *
 	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
 	 */
@@ -713,6 +812,9 @@ public class WebInterface implements CoreListener {
 		@SuppressWarnings("hiding")
 		private final TemplateFactory templateFactory;
 
+		/** The parsed templates, by name. */
+		private final Map<String, Template> templates = new HashMap<String, Template>();
+
 		/**
 		 * Creates a new template provider that locates templates on the
 		 * classpath.
@@ -730,6 +832,12 @@ public class WebInterface implements CoreListener {
 		@Override
 		@SuppressWarnings("synthetic-access")
 		public Template getTemplate(String templateName) {
+			synchronized (templates) {
+				Template template = templates.get(templateName);
+				if (template != null) {
+					return template;
+				}
+			}
 			Reader templateReader = createReader("/templates/" + templateName);
 			if (templateReader == null) {
 				return null;
@@ -739,6 +847,16 @@ public class WebInterface implements CoreListener {
 				template.parse();
 			} catch (TemplateException te1) {
 				logger.log(Level.WARNING, "Could not parse template “" + templateName + "” for inclusion!", te1);
+				return template;
+			} finally {
+				Closer.close(templateReader);
+			}
+			synchronized (templates) {
+				Template existingTemplate = templates.get(templateName);
+				if (existingTemplate != null) {
+					return existingTemplate;
+				}
+				templates.put(templateName, template);
 			}
 			return template;
 		}
@@ -48,7 +48,21 @@ public class GetPostAjaxPage extends JsonPage {
 	 *            The template to render for posts
 	 */
 	public GetPostAjaxPage(WebInterface webInterface, Template postTemplate) {
-		super("getPost.ajax", webInterface);
+		this("getPost.ajax", webInterface, postTemplate);
+	}
+
+	/**
+	 * Creates a new “get post” AJAX handler.
+	 *
+	 * @param path
+	 *            The path of the page
+	 * @param webInterface
+	 *            The Sone web interface
+	 * @param postTemplate
+	 *            The template to render for posts
+	 */
+	protected GetPostAjaxPage(String path, WebInterface webInterface, Template postTemplate) {
+		super(path, webInterface);
 		this.postTemplate = postTemplate;
 	}
 
@@ -74,7 +88,7 @@ public class GetPostAjaxPage extends JsonPage {
 	}
 
 	//
-	// PRIVATE METHODS
+	// PROTECTED METHODS
 	//
 
 	/**
@@ -87,7 +101,7 @@ public class GetPostAjaxPage extends JsonPage {
 	 *            The currently logged in Sone (to store in the template)
 	 * @return The JSON representation of the post
 	 */
-	private JsonObject createJsonPost(Post post, Sone currentSone) {
+	protected JsonObject createJsonPost(Post post, Sone currentSone) {
 		JsonObject jsonPost = new JsonObject();
 		jsonPost.put("id", post.getId());
 		jsonPost.put("sone", post.getSone().getId());
@@ -0,0 +1,84 @@
+/*
+ * Sone - GetPostsAjaxPage.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.util.json.JsonArray;
+import net.pterodactylus.util.json.JsonObject;
+import net.pterodactylus.util.template.Template;
+
+/**
+ * This AJAX handler returns the information and rendered representations of
+ * several {@link Post}s in a single request. The IDs of the posts are
+ * given as a comma-separated list in the “posts” parameter; IDs of unknown
+ * posts are ignored.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class GetPostsAjaxPage extends GetPostAjaxPage {
+
+	/** The maximum number of posts to return in one request. */
+	private static final int MAXIMUM_POSTS = 100;
+
+	/**
+	 * Creates a new “get posts” AJAX handler.
+	 *
+	 * @param webInterface
+	 *            The Sone web interface
+	 * @param postTemplate
+	 *            The template to render for posts
+	 */
+	public GetPostsAjaxPage(WebInterface webInterface, Template postTemplate) {
+		super("getPosts.ajax", webInterface, postTemplate);
+	}
+
+	//
+	// JSONPAGE METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected JsonObject createJsonObject(Request request) {
+		String postIds = request.getHttpRequest().getParam("posts");
+		Sone currentSone = getCurrentSone(request.getToadletContext());
+		JsonArray jsonPosts = new JsonArray();
+		Set<String> seenPostIds = new HashSet<String>();
+		for (String postId : postIds.split(",")) {
+			postId = postId.trim();
+			if ((postId.length() == 0) || !seenPostIds.add(postId)) {
+				continue;
+			}
+			if (seenPostIds.size() > MAXIMUM_POSTS) {
+				break;
+			}
+			Post post = webInterface.getCore().getPost(postId, false);
+			if ((post != null) && (post.getSone() != null)) {
+				jsonPosts.add(createJsonPost(post, currentSone));
+			}
+		}
+		return createSuccessJsonObject().put("posts", jsonPosts);
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Sone - GetRepliesAjaxPage.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import net.pterodactylus.sone.data.Reply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.util.json.JsonArray;
+import net.pterodactylus.util.json.JsonObject;
+import net.pterodactylus.util.template.Template;
+
+/**
+ * This AJAX handler returns the information and rendered representations of
+ * several {@link Reply}s in a single request. The IDs of the replies are
+ * given as a comma-separated list in the “replies” parameter; IDs of unknown
+ * replies are ignored.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class GetRepliesAjaxPage extends GetReplyAjaxPage {
+
+	/** The maximum number of replies to return in one request. */
+	private static final int MAXIMUM_REPLIES = 100;
+
+	/**
+	 * Creates a new “get replies” AJAX handler.
+	 *
+	 * @param webInterface
+	 *            The Sone web interface
+	 * @param replyTemplate
+	 *            The template to render
+	 */
+	public GetRepliesAjaxPage(WebInterface webInterface, Template replyTemplate) {
+		super("getReplies.ajax", webInterface, replyTemplate);
+	}
+
+	//
+	// JSONPAGE METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected JsonObject createJsonObject(Request request) {
+		String replyIds = request.getHttpRequest().getParam("replies");
+		Sone currentSone = getCurrentSone(request.getToadletContext());
+		JsonArray jsonReplies = new JsonArray();
+		Set<String> seenReplyIds = new HashSet<String>();
+		for (String replyId : replyIds.split(",")) {
+			replyId = replyId.trim();
+			if ((replyId.length() == 0) || !seenReplyIds.add(replyId)) {
+				continue;
+			}
+			if (seenReplyIds.size() > MAXIMUM_REPLIES) {
+				break;
+			}
+			Reply reply = webInterface.getCore().getReply(replyId);
+			if ((reply != null) && (reply.getSone() != null)) {
+				jsonReplies.add(createJsonReply(reply, currentSone));
+			}
+		}
+		return createSuccessJsonObject().put("replies", jsonReplies);
+	}
+
+}
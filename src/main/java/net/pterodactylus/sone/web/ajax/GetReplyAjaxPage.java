@@ -47,7 +47,21 @@ public class GetReplyAjaxPage extends JsonPage {
 	 *            The template to render
 	 */
 	public GetReplyAjaxPage(WebInterface webInterface, Template replyTemplate) {
-		super("getReply.ajax", webInterface);
+		this("getReply.ajax", webInterface, replyTemplate);
+	}
+
+	/**
+	 * Creates a new “get reply” AJAX handler.
+	 *
+	 * @param path
+	 *            The path of the page
+	 * @param webInterface
+	 *            The Sone web interface
+	 * @param replyTemplate
+	 *            The template to render
+	 */
+	protected GetReplyAjaxPage(String path, WebInterface webInterface, Template replyTemplate) {
+		super(path, webInterface);
 		this.replyTemplate = replyTemplate;
 	}
 
@@ -77,7 +91,7 @@ public class GetReplyAjaxPage extends JsonPage {
 	}
 
 	//
-	// PRIVATE METHODS
+	// PROTECTED METHODS
 	//
 
 	/**
@@ -89,7 +103,7 @@ public class GetReplyAjaxPage extends JsonPage {
 	 *            The currently logged in Sone (to store in the template)
 	 * @return The JSON representation of the reply
 	 */
-	private JsonObject createJsonReply(Reply reply, Sone currentSone) {
+	protected JsonObject createJsonReply(Reply reply, Sone currentSone) {
 		JsonObject jsonReply = new JsonObject();
 		jsonReply.put("id", reply.getId());
 		jsonReply.put("postId", reply.getPost().getId());
@@ -29,11 +29,13 @@ import java.util.Set;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.notify.NotificationTracker;
 import net.pterodactylus.sone.template.SoneAccessor;
 import net.pterodactylus.sone.web.WebInterface;
 import net.pterodactylus.util.json.JsonArray;
 import net.pterodactylus.util.json.JsonObject;
 import net.pterodactylus.util.notify.Notification;
+import net.pterodactylus.util.number.Numbers;
 
 /**
  * The “get status” AJAX handler returns all information that is necessary to
@@ -53,58 +55,181 @@ public class GetStatusAjaxPage extends JsonPage {
 	 *            The Sone web interface
 	 */
 	public GetStatusAjaxPage(WebInterface webInterface) {
-		super("getStatus.ajax", webInterface);
+		this("getStatus.ajax", webInterface);
+	}
+
+	/**
+	 * Creates a new “get status” AJAX handler at the given path.
+	 *
+	 * @param path
+	 *            The path of the page
+	 * @param webInterface
+	 *            The Sone web interface
+	 */
+	protected GetStatusAjaxPage(String path, WebInterface webInterface) {
+		super(path, webInterface);
 	}
 
 	/**
 	 * {@inheritDoc}
+	 * <p>
+	 * If the request contains a “since” parameter with a change sequence
+	 * token, only the Sones, notifications, posts, and replies that have
+	 * changed after it are returned; if nothing has changed, the reply only
+	 * contains the current change sequence token and an “unchanged” flag.
+	 * Without the parameter, everything is returned.
 	 */
 	@Override
 	protected JsonObject createJsonObject(Request request) {
+		long since = getSince(request);
+		long changeSequence = updateChangeSequence();
+		JsonObject jsonObject = createStatusJsonObject(request, since, changeSequence);
+		if (jsonObject == null) {
+			return createUnchangedJsonObject(changeSequence);
+		}
+		return jsonObject;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean needsFormPassword() {
+		return false;
+	}
+
+	//
+	// PROTECTED METHODS
+	//
+
+	/**
+	 * Returns the change sequence number given in the “since” parameter of
+	 * the request. The parameter contains a token created by
+	 * {@link #createChangeSequenceToken(long)}. The change sequence starts at
+	 * 0 again when the plugin is restarted, so a token with an epoch that is
+	 * not the epoch of the running core was handed out before the restart and
+	 * requests a full status.
+	 *
+	 * @param request
+	 *            The request
+	 * @return The change sequence number, or {@code -1} if the request does
+	 *         not contain a valid change sequence token of the running plugin
+	 */
+	protected long getSince(Request request) {
+		String since = request.getHttpRequest().getParam("since");
+		int colon = since.indexOf(':');
+		if (colon == -1) {
+			return -1;
+		}
+		long epoch = Numbers.safeParseLong(since.substring(0, colon), -1L);
+		if (epoch != webInterface.getCore().getChangeSequenceEpoch()) {
+			return -1;
+		}
+		long changeSequence = Numbers.safeParseLong(since.substring(colon + 1), -1L);
+		if (changeSequence > webInterface.getCore().getChangeSequence()) {
+			return -1;
+		}
+		return changeSequence;
+	}
+
+	/**
+	 * Creates the token for the given change sequence number that is handed
+	 * to the client. The token contains the
+	 * {@link net.pterodactylus.sone.core.Core#getChangeSequenceEpoch() epoch}
+	 * of the change sequence and the change sequence number, separated by a
+	 * colon.
+	 *
+	 * @param changeSequence
+	 *            The change sequence number
+	 * @return The change sequence token
+	 */
+	protected String createChangeSequenceToken(long changeSequence) {
+		return webInterface.getCore().getChangeSequenceEpoch() + ":" + changeSequence;
+	}
+
+	/**
+	 * Updates the notification tracker and returns the current change
+	 * sequence number. Everything that has changed up to the returned change
+	 * sequence number is contained in the status created by
+	 * {@link #createStatusJsonObject(Request, long, long)}.
+	 *
+	 * @return The current change sequence number
+	 */
+	protected long updateChangeSequence() {
+		webInterface.getNotificationTracker().update(webInterface.getNotifications().getNotifications());
+		return webInterface.getCore().getChangeSequence();
+	}
+
+	/**
+	 * Creates a reply that only signals that nothing has changed.
+	 *
+	 * @param changeSequence
+	 *            The current change sequence number
+	 * @return A reply signaling that nothing has changed
+	 */
+	protected JsonObject createUnchangedJsonObject(long changeSequence) {
+		return createSuccessJsonObject().put("sequence", createChangeSequenceToken(changeSequence)).put("unchanged", true);
+	}
+
+	/**
+	 * Creates the status reply containing everything that has changed after
+	 * the given change sequence number.
+	 *
+	 * @param request
+	 *            The request
+	 * @param since
+	 *            The change sequence number, or {@code -1} to return
+	 *            everything
+	 * @param changeSequence
+	 *            The current change sequence number
+	 * @return The status reply, or {@code null} if nothing has changed
+	 */
+	protected JsonObject createStatusJsonObject(Request request, long since, long changeSequence) {
+		NotificationTracker notificationTracker = webInterface.getNotificationTracker();
 		/* load Sones. */
 		boolean loadAllSones = Boolean.parseBoolean(request.getHttpRequest().getParam("loadAllSones", "true"));
 		Set<Sone> sones = new HashSet<Sone>(Collections.singleton(getCurrentSone(request.getToadletContext())));
 		if (loadAllSones) {
 			sones.addAll(webInterface.getCore().getSones());
 		}
-		JsonArray jsonSones = new JsonArray();
+		List<Sone> changedSones = new ArrayList<Sone>();
 		for (Sone sone : sones) {
+			if (webInterface.getCore().getSoneChangeSequence(sone) > since) {
+				changedSones.add(sone);
+			}
+		}
+		JsonArray jsonSones = new JsonArray();
+		for (Sone sone : changedSones) {
 			JsonObject jsonSone = createJsonSone(sone);
 			jsonSones.add(jsonSone);
 		}
 		/* load notifications. */
-		List<Notification> notifications = new ArrayList<Notification>(webInterface.getNotifications().getChangedNotifications());
-		Set<Notification> removedNotifications = webInterface.getNotifications().getRemovedNotifications();
-		Collections.sort(notifications, Notification.LAST_UPDATED_TIME_SORTER);
+		List<Notification> notifications = notificationTracker.getChangedNotifications(since);
 		JsonArray jsonNotifications = new JsonArray();
 		for (Notification notification : notifications) {
 			jsonNotifications.add(createJsonNotification(notification));
 		}
+		List<String> removedNotificationIds = notificationTracker.getRemovedNotificationIds(since);
 		JsonArray jsonRemovedNotifications = new JsonArray();
-		for (Notification notification : removedNotifications) {
-			jsonRemovedNotifications.add(createJsonNotification(notification));
+		for (String removedNotificationId : removedNotificationIds) {
+			jsonRemovedNotifications.add(new JsonObject().put("id", removedNotificationId));
 		}
 		/* load new posts. */
-		Set<Post> newPosts = webInterface.getNewPosts();
+		Set<Post> newPosts = webInterface.getNewPosts(since);
 		JsonArray jsonPosts = new JsonArray();
 		for (Post post : newPosts) {
 			jsonPosts.add(post.getId());
 		}
 		/* load new replies. */
-		Set<Reply> newReplies = webInterface.getNewReplies();
+		Set<Reply> newReplies = webInterface.getNewReplies(since);
 		JsonArray jsonReplies = new JsonArray();
 		for (Reply reply : newReplies) {
 			jsonReplies.add(reply.getId());
 		}
-		return createSuccessJsonObject().put("sones", jsonSones).put("notifications", jsonNotifications).put("removedNotifications", jsonRemovedNotifications).put("newPosts", jsonPosts).put("newReplies", jsonReplies);
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	protected boolean needsFormPassword() {
-		return false;
+		if ((since > -1) && changedSones.isEmpty() && notifications.isEmpty() && removedNotificationIds.isEmpty() && newPosts.isEmpty() && newReplies.isEmpty()) {
+			return null;
+		}
+		return createSuccessJsonObject().put("sequence", createChangeSequenceToken(changeSequence)).put("sones", jsonSones).put("notifications", jsonNotifications).put("removedNotifications", jsonRemovedNotifications).put("newPosts", jsonPosts).put("newReplies", jsonReplies);
 	}
 
 	//
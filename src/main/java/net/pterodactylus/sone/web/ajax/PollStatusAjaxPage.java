@@ -0,0 +1,102 @@
+/*
+ * Sone - PollStatusAjaxPage.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import java.util.concurrent.Semaphore;
+
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.util.json.JsonObject;
+import net.pterodactylus.util.number.Numbers;
+
+/**
+ * The “poll status” AJAX handler works like the {@link GetStatusAjaxPage} but
+ * does not return until something has changed after the change sequence
+ * token given in the “since” parameter, or until a timeout (given in seconds
+ * in the “timeout” parameter) has passed. The reply contains the number of
+ * milliseconds the client should wait before polling again in “wait”.
+ * <p>
+ * The node handles every request in its own thread, so parked requests block
+ * that thread; they do not use any additional threads but all wait on the
+ * {@link net.pterodactylus.sone.core.Core#waitForChange(long, long) core’s
+ * change monitor}. To not tie up too many of the node’s threads, only a
+ * limited number of requests is parked at the same time, all further requests
+ * are answered immediately.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class PollStatusAjaxPage extends GetStatusAjaxPage {
+
+	/** The maximum number of parked requests. */
+	private static final int MAXIMUM_PARKED_REQUESTS = 8;
+
+	/** The default timeout (in seconds). */
+	private static final int DEFAULT_TIMEOUT = 30;
+
+	/** The maximum timeout (in seconds). */
+	private static final int MAXIMUM_TIMEOUT = 120;
+
+	/** The time clients should wait if their request was not parked. */
+	private static final int UNPARKED_WAIT_TIME = 5000;
+
+	/** The permits for parked requests. */
+	private final Semaphore parkedRequests = new Semaphore(MAXIMUM_PARKED_REQUESTS);
+
+	/**
+	 * Creates a new “poll status” AJAX handler.
+	 *
+	 * @param webInterface
+	 *            The Sone web interface
+	 */
+	public PollStatusAjaxPage(WebInterface webInterface) {
+		super("pollStatus.ajax", webInterface);
+	}
+
+	//
+	// JSONPAGE METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected JsonObject createJsonObject(Request request) {
+		long since = getSince(request);
+		if ((since < 0) || !parkedRequests.tryAcquire()) {
+			return super.createJsonObject(request).put("wait", (since < 0) ? 0 : UNPARKED_WAIT_TIME);
+		}
+		try {
+			int timeout = Math.max(0, Math.min(MAXIMUM_TIMEOUT, Numbers.safeParseInteger(request.getHttpRequest().getParam("timeout"), DEFAULT_TIMEOUT)));
+			long endTime = System.currentTimeMillis() + timeout * 1000L;
+			while (true) {
+				long changeSequence = updateChangeSequence();
+				JsonObject jsonObject = createStatusJsonObject(request, since, changeSequence);
+				if (jsonObject != null) {
+					return jsonObject.put("wait", 0);
+				}
+				/* only wake up for changes that are not yet checked. */
+				long remainingTime = endTime - System.currentTimeMillis();
+				if ((remainingTime <= 0) || !webInterface.getCore().waitForChange(changeSequence, remainingTime)) {
+					return createUnchangedJsonObject(changeSequence).put("wait", 0);
+				}
+			}
+		} finally {
+			parkedRequests.release();
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Sone - GzipEncoder.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.page;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses data into the gzip format. Unlike
+ * {@link java.util.zip.GZIPOutputStream}, which creates (and leaves to the
+ * garbage collector) a new {@link Deflater} with its native buffers for every
+ * stream, this encoder keeps a small pool of deflaters that are reset and
+ * reused for every response.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class GzipEncoder {
+
+	/** The maximum number of idle deflaters to keep. */
+	private static final int MAXIMUM_POOL_SIZE = 4;
+
+	/** The header of a gzip stream without file name and timestamp. */
+	private static final byte[] GZIP_HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	/** The idle deflaters. */
+	private static final List<Deflater> deflaterPool = new ArrayList<Deflater>();
+
+	/**
+	 * Compresses all data from the given input stream and writes it, in gzip
+	 * format, to the given output stream. Neither stream is closed.
+	 *
+	 * @param inputStream
+	 *            The input stream to read the data from
+	 * @param outputStream
+	 *            The output stream to write the compressed data to
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static void compress(InputStream inputStream, OutputStream outputStream) throws IOException {
+		Deflater deflater = getDeflater();
+		try {
+			CRC32 crc = new CRC32();
+			byte[] inputBuffer = new byte[8192];
+			byte[] outputBuffer = new byte[8192];
+			outputStream.write(GZIP_HEADER);
+			int read;
+			while ((read = inputStream.read(inputBuffer)) != -1) {
+				crc.update(inputBuffer, 0, read);
+				deflater.setInput(inputBuffer, 0, read);
+				while (!deflater.needsInput()) {
+					int deflated = deflater.deflate(outputBuffer);
+					outputStream.write(outputBuffer, 0, deflated);
+				}
+			}
+			deflater.finish();
+			while (!deflater.finished()) {
+				int deflated = deflater.deflate(outputBuffer);
+				outputStream.write(outputBuffer, 0, deflated);
+			}
+			writeInt(outputStream, (int) crc.getValue());
+			writeInt(outputStream, (int) deflater.getBytesRead());
+		} finally {
+			returnDeflater(deflater);
+		}
+	}
+
+	/**
+	 * Compresses the given data into the gzip format.
+	 *
+	 * @param data
+	 *            The data to compress
+	 * @return The compressed data
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static byte[] compress(byte[] data) throws IOException {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(data.length / 4 + 64);
+		compress(new ByteArrayInputStream(data), byteArrayOutputStream);
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns an idle deflater from the pool, or creates a new one if the pool
+	 * is empty.
+	 *
+	 * @return A deflater that writes raw deflate data
+	 */
+	private static Deflater getDeflater() {
+		synchronized (deflaterPool) {
+			if (!deflaterPool.isEmpty()) {
+				return deflaterPool.remove(deflaterPool.size() - 1);
+			}
+		}
+		return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	}
+
+	/**
+	 * Resets the given deflater and returns it to the pool. If the pool is
+	 * full, the deflater is released instead.
+	 *
+	 * @param deflater
+	 *            The deflater to return
+	 */
+	private static void returnDeflater(Deflater deflater) {
+		deflater.reset();
+		synchronized (deflaterPool) {
+			if (deflaterPool.size() < MAXIMUM_POOL_SIZE) {
+				deflaterPool.add(deflater);
+				return;
+			}
+		}
+		deflater.end();
+	}
+
+	/**
+	 * Writes the given value as little-endian 32-bit integer.
+	 *
+	 * @param outputStream
+	 *            The output stream to write to
+	 * @param value
+	 *            The value to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static void writeInt(OutputStream outputStream, int value) throws IOException {
+		outputStream.write(value & 0xff);
+		outputStream.write((value >>> 8) & 0xff);
+		outputStream.write((value >>> 16) & 0xff);
+		outputStream.write((value >>> 24) & 0xff);
+	}
+
+}
@@ -24,6 +24,7 @@ import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 
+import net.pterodactylus.util.io.Renderable;
 import freenet.clients.http.ToadletContext;
 import freenet.support.api.HTTPRequest;
 
@@ -180,6 +181,12 @@ public interface Page {
 		/** The content of the response body. */
 		private final InputStream content;
 
+		/** The content of the response body, if it is given as byte array. */
+		private final byte[] contentBytes;
+
+		/** The content of the response body, if it is rendered on demand. */
+		private final Renderable renderableContent;
+
 		/**
 		 * Creates a new response.
 		 *
@@ -243,7 +250,7 @@ public interface Page {
 		 *            The content of the reponse body
 		 */
 		public Response(int statusCode, String statusText, String contentType, Map<String, String> headers, byte[] content) {
-			this(statusCode, statusText, contentType, headers, new ByteArrayInputStream(content));
+			this(statusCode, statusText, contentType, headers, null, content, null);
 		}
 
 		/**
@@ -261,11 +268,54 @@ public interface Page {
 		 *            The content of the reponse body
 		 */
 		public Response(int statusCode, String statusText, String contentType, Map<String, String> headers, InputStream content) {
+			this(statusCode, statusText, contentType, headers, content, null, null);
+		}
+
+		/**
+		 * Creates a new response whose content is rendered when it is sent,
+		 * directly into the output, encoded as UTF-8.
+		 *
+		 * @param statusCode
+		 *            The HTTP status code of the response
+		 * @param statusText
+		 *            The HTTP status text of the response
+		 * @param contentType
+		 *            The content type of the response
+		 * @param headers
+		 *            The headers of the response
+		 * @param content
+		 *            The content of the reponse body
+		 */
+		public Response(int statusCode, String statusText, String contentType, Map<String, String> headers, Renderable content) {
+			this(statusCode, statusText, contentType, headers, null, null, content);
+		}
+
+		/**
+		 * Creates a new response.
+		 *
+		 * @param statusCode
+		 *            The HTTP status code of the response
+		 * @param statusText
+		 *            The HTTP status text of the response
+		 * @param contentType
+		 *            The content type of the response
+		 * @param headers
+		 *            The headers of the response
+		 * @param content
+		 *            The content of the reponse body as stream
+		 * @param contentBytes
+		 *            The content of the reponse body as byte array
+		 * @param renderableContent
+		 *            The content of the reponse body as renderable
+		 */
+		private Response(int statusCode, String statusText, String contentType, Map<String, String> headers, InputStream content, byte[] contentBytes, Renderable renderableContent) {
 			this.statusCode = statusCode;
 			this.statusText = statusText;
 			this.contentType = contentType;
 			this.headers = headers;
 			this.content = content;
+			this.contentBytes = contentBytes;
+			this.renderableContent = renderableContent;
 		}
 
 		/**
@@ -328,9 +378,34 @@ public interface Page {
 		 * @return The content of the response body
 		 */
 		public InputStream getContent() {
+			if (contentBytes != null) {
+				return new ByteArrayInputStream(contentBytes);
+			}
 			return content;
 		}
 
+		/**
+		 * Returns the content of the response body if it was given as byte
+		 * array. The array is not copied and must not be modified.
+		 *
+		 * @return The content of the response body, or {@code null} if the
+		 *         content was not given as byte array
+		 */
+		public byte[] getContentBytes() {
+			return contentBytes;
+		}
+
+		/**
+		 * Returns the content of the response body if it is rendered when the
+		 * response is sent. The content has to be encoded as UTF-8.
+		 *
+		 * @return The content of the response body, or {@code null} if the
+		 *         content is not rendered on demand
+		 */
+		public Renderable getRenderableContent() {
+			return renderableContent;
+		}
+
 		//
 		// PRIVATE METHODS
 		//
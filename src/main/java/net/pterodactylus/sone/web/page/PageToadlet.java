@@ -17,7 +17,12 @@
 
 package net.pterodactylus.sone.web.page;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.util.Map.Entry;
 
@@ -40,6 +45,9 @@ import freenet.support.io.Closer;
  */
 public class PageToadlet extends Toadlet implements LinkEnabledCallback {
 
+	/** The minimum size of a response body that is compressed (in bytes). */
+	private static final int MINIMUM_COMPRESSION_SIZE = 1024;
+
 	/** The name of the menu item. */
 	private final String menuName;
 
@@ -149,8 +157,30 @@ public class PageToadlet extends Toadlet implements LinkEnabledCallback {
 					headers.put(headerEntry.getKey(), headerEntry.getValue());
 				}
 			}
+			boolean compressible = isCompressible(pageResponse);
+			boolean compress = false;
+			if (compressible) {
+				headers.put("Vary", "Accept-Encoding");
+				compress = StaticPage.acceptsGzip(pageRequest.getToadletContext().getHeaders().get("accept-encoding"));
+			}
+			if (pageResponse.getContentBytes() != null) {
+				byte[] content = pageResponse.getContentBytes();
+				if (compress && (content.length >= MINIMUM_COMPRESSION_SIZE)) {
+					content = GzipEncoder.compress(content);
+					headers.put("Content-Encoding", "gzip");
+				}
+				writeDirectReply(pageRequest.getToadletContext(), pageResponse.getStatusCode(), pageResponse.getContentType(), pageResponse.getStatusText(), headers, content);
+				return;
+			}
 			data = pageRequest.getToadletContext().getBucketFactory().makeBucket(-1);
-			if (pageResponse.getContent() != null) {
+			if (pageResponse.getRenderableContent() != null) {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(data.getOutputStream(), "UTF-8"));
+				try {
+					pageResponse.getRenderableContent().render(writer);
+				} finally {
+					Closer.close(writer);
+				}
+			} else if (pageResponse.getContent() != null) {
 				try {
 					BucketTools.copyFrom(data, pageResponse.getContent(), -1);
 				} finally {
@@ -160,6 +190,10 @@ public class PageToadlet extends Toadlet implements LinkEnabledCallback {
 				/* get an OutputStream and close it immediately. */
 				Closer.close(data.getOutputStream());
 			}
+			if (compress && (data.size() >= MINIMUM_COMPRESSION_SIZE)) {
+				data = compress(pageRequest.getToadletContext(), data);
+				headers.put("Content-Encoding", "gzip");
+			}
 			writeReply(pageRequest.getToadletContext(), pageResponse.getStatusCode(), pageResponse.getContentType(), pageResponse.getStatusText(), headers, data);
 		} catch (Throwable t1) {
 			writeInternalError(t1, pageRequest.getToadletContext());
@@ -168,6 +202,89 @@ public class PageToadlet extends Toadlet implements LinkEnabledCallback {
 		}
 	}
 
+	/**
+	 * Returns whether the content of the given response should be compressed
+	 * if the client accepts it. Only HTML and JSON responses that are not
+	 * already encoded are compressed.
+	 *
+	 * @param pageResponse
+	 *            The response to check
+	 * @return {@code true} if the response should be compressed,
+	 *         {@code false} otherwise
+	 */
+	private static boolean isCompressible(Page.Response pageResponse) {
+		String contentType = pageResponse.getContentType();
+		if ((contentType == null) || (!contentType.startsWith("text/html") && !contentType.startsWith("application/json"))) {
+			return false;
+		}
+		if (pageResponse.getHeaders() != null) {
+			for (String headerName : pageResponse.getHeaders().keySet()) {
+				if (headerName.equalsIgnoreCase("Content-Encoding")) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compresses the content of the given bucket into a new bucket. The given
+	 * bucket is freed.
+	 *
+	 * @param toadletContext
+	 *            The toadlet context
+	 * @param data
+	 *            The bucket to compress
+	 * @return The bucket with the compressed data
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static Bucket compress(ToadletContext toadletContext, Bucket data) throws IOException {
+		Bucket compressedData = toadletContext.getBucketFactory().makeBucket(-1);
+		InputStream inputStream = null;
+		OutputStream outputStream = null;
+		try {
+			inputStream = data.getInputStream();
+			outputStream = compressedData.getOutputStream();
+			GzipEncoder.compress(inputStream, outputStream);
+		} catch (IOException ioe1) {
+			Closer.close(compressedData);
+			throw ioe1;
+		} finally {
+			Closer.close(outputStream);
+			Closer.close(inputStream);
+			Closer.close(data);
+		}
+		return compressedData;
+	}
+
+	/**
+	 * Writes a reply whose content is already available as byte array
+	 * directly to the toadlet context, without copying it into a bucket
+	 * first.
+	 *
+	 * @param toadletContext
+	 *            The toadlet context
+	 * @param statusCode
+	 *            The HTTP status code of the reply
+	 * @param contentType
+	 *            The content type of the reply
+	 * @param statusText
+	 *            The HTTP status text of the reply
+	 * @param headers
+	 *            The headers of the reply
+	 * @param content
+	 *            The content of the reply
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ToadletContextClosedException
+	 *             if the toadlet context is closed
+	 */
+	private static void writeDirectReply(ToadletContext toadletContext, int statusCode, String contentType, String statusText, MultiValueTable<String, String> headers, byte[] content) throws IOException, ToadletContextClosedException {
+		toadletContext.sendReplyHeaders(statusCode, statusText, headers, contentType, content.length);
+		toadletContext.writeData(content, 0, content.length);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
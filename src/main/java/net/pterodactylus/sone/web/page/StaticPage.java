@@ -17,15 +17,38 @@
 
 package net.pterodactylus.sone.web.page;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import net.pterodactylus.util.io.Closer;
+import net.pterodactylus.util.logging.Logging;
 
 /**
  * {@link Page} implementation that delivers static files from the class path.
+ * Every file is only loaded once; it is then kept in memory, together with a
+ * gzip-compressed copy if that is smaller. Files are delivered with an ETag
+ * and a Cache-Control header, and requests with a matching If-None-Match
+ * header are answered with “304 Not Modified”. The gzip-compressed copy has its
+ * own ETag.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
 public class StaticPage implements Page {
 
+	/** The logger. */
+	private static final Logger logger = Logging.getLogger(StaticPage.class);
+
+	/** The maximum age of static files in caches (in seconds). */
+	private static final int MAXIMUM_AGE = 24 * 60 * 60;
+
 	/** The prefix for {@link #getPath()}. */
 	private final String pathPrefix;
 
@@ -35,6 +58,10 @@ public class StaticPage implements Page {
 	/** The MIME type for the files this path contains. */
 	private final String mimeType;
 
+	/** The loaded resources, by filename. */
+	/* synchronize access on itself. */
+	private final Map<String, StaticResource> resources = new HashMap<String, StaticResource>();
+
 	/**
 	 * Creates a new CSS page.
 	 *
@@ -67,11 +94,246 @@ public class StaticPage implements Page {
 		String path = request.getUri().getPath();
 		int lastSlash = path.lastIndexOf('/');
 		String filename = path.substring(lastSlash + 1);
-		InputStream fileInputStream = getClass().getResourceAsStream(resourcePathPrefix + filename);
-		if (fileInputStream == null) {
+		StaticResource staticResource = getResource(filename);
+		if (staticResource == null) {
 			return new Response(404, "Not found.", null, "");
 		}
-		return new Response(200, "OK", mimeType, null, fileInputStream);
+		boolean gzipped = (staticResource.getGzippedContent() != null) && acceptsGzip(request.getToadletContext().getHeaders().get("accept-encoding"));
+		String eTag = gzipped ? staticResource.getGzippedETag() : staticResource.getETag();
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put("ETag", eTag);
+		headers.put("Cache-Control", "max-age=" + MAXIMUM_AGE);
+		headers.put("Vary", "Accept-Encoding");
+		if (matchesETag(request.getToadletContext().getHeaders().get("if-none-match"), eTag)) {
+			return new Response(304, "Not Modified", null, headers);
+		}
+		if (gzipped) {
+			headers.put("Content-Encoding", "gzip");
+			return new Response(200, "OK", mimeType, headers, staticResource.getGzippedContent());
+		}
+		return new Response(200, "OK", mimeType, headers, staticResource.getContent());
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the resource with the given filename, loading it if it has not
+	 * been loaded yet.
+	 *
+	 * @param filename
+	 *            The filename of the resource
+	 * @return The resource, or {@code null} if there is no such resource
+	 */
+	private StaticResource getResource(String filename) {
+		synchronized (resources) {
+			StaticResource staticResource = resources.get(filename);
+			if (staticResource != null) {
+				return staticResource;
+			}
+		}
+		InputStream resourceInputStream = getClass().getResourceAsStream(resourcePathPrefix + filename);
+		if (resourceInputStream == null) {
+			return null;
+		}
+		StaticResource staticResource;
+		try {
+			staticResource = new StaticResource(readFully(resourceInputStream));
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, "Could not load resource “" + resourcePathPrefix + filename + "”!", ioe1);
+			return null;
+		} finally {
+			Closer.close(resourceInputStream);
+		}
+		synchronized (resources) {
+			resources.put(filename, staticResource);
+		}
+		return staticResource;
+	}
+
+	/**
+	 * Reads the given input stream until its end.
+	 *
+	 * @param inputStream
+	 *            The input stream to read
+	 * @return The read data
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static byte[] readFully(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			byteArrayOutputStream.write(buffer, 0, read);
+		}
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	/**
+	 * Returns whether the given If-None-Match header matches the given ETag.
+	 *
+	 * @param ifNoneMatch
+	 *            The value of the If-None-Match header (may be {@code null})
+	 * @param eTag
+	 *            The ETag of the resource
+	 * @return {@code true} if the header matches the ETag, {@code false}
+	 *         otherwise
+	 */
+	private static boolean matchesETag(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String requestedETag : ifNoneMatch.split(",")) {
+			requestedETag = requestedETag.trim();
+			if (requestedETag.equals("*") || requestedETag.equals(eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the given Accept-Encoding header allows gzip-compressed
+	 * content.
+	 *
+	 * @param acceptEncoding
+	 *            The value of the Accept-Encoding header (may be {@code null})
+	 * @return {@code true} if gzip-compressed content is accepted,
+	 *         {@code false} otherwise
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String encoding : acceptEncoding.toLowerCase().split(",")) {
+			String[] parameters = encoding.split(";");
+			if (!parameters[0].trim().equals("gzip")) {
+				continue;
+			}
+			for (int parameterIndex = 1; parameterIndex < parameters.length; ++parameterIndex) {
+				String parameter = parameters[parameterIndex].replace(" ", "");
+				if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A static resource that has been loaded into memory.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class StaticResource {
+
+		/** The content of the resource. */
+		private final byte[] content;
+
+		/** The gzip-compressed content, or {@code null}. */
+		private final byte[] gzippedContent;
+
+		/** The ETag of the resource. */
+		private final String eTag;
+
+		/** The ETag of the gzip-compressed content. */
+		private final String gzippedETag;
+
+		/**
+		 * Creates a new static resource.
+		 *
+		 * @param content
+		 *            The content of the resource
+		 * @throws IOException
+		 *             if the content can not be compressed
+		 */
+		public StaticResource(byte[] content) throws IOException {
+			this.content = content;
+			byte[] gzippedContent = gzip(content);
+			this.gzippedContent = (gzippedContent.length < (content.length * 9L / 10)) ? gzippedContent : null;
+			String hash = createHash(content);
+			this.eTag = "\"" + hash + "\"";
+			this.gzippedETag = "\"" + hash + "-gz\"";
+		}
+
+		/**
+		 * Returns the content of the resource.
+		 *
+		 * @return The content of the resource
+		 */
+		public byte[] getContent() {
+			return content;
+		}
+
+		/**
+		 * Returns the gzip-compressed content of the resource.
+		 *
+		 * @return The gzip-compressed content, or {@code null} if compression
+		 *         does not make the resource smaller
+		 */
+		public byte[] getGzippedContent() {
+			return gzippedContent;
+		}
+
+		/**
+		 * Returns the ETag of the resource.
+		 *
+		 * @return The ETag of the resource
+		 */
+		public String getETag() {
+			return eTag;
+		}
+
+		/**
+		 * Returns the ETag of the gzip-compressed content of the resource.
+		 *
+		 * @return The ETag of the gzip-compressed content
+		 */
+		public String getGzippedETag() {
+			return gzippedETag;
+		}
+
+		/**
+		 * Compresses the given data.
+		 *
+		 * @param data
+		 *            The data to compress
+		 * @return The compressed data
+		 * @throws IOException
+		 *             if an I/O error occurs
+		 */
+		private static byte[] gzip(byte[] data) throws IOException {
+			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(data.length / 2);
+			GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
+			gzipOutputStream.write(data);
+			gzipOutputStream.close();
+			return byteArrayOutputStream.toByteArray();
+		}
+
+		/**
+		 * Creates a hash of the given data.
+		 *
+		 * @param data
+		 *            The data to hash
+		 * @return The hash of the data, as hexadecimal string
+		 */
+		private static String createHash(byte[] data) {
+			try {
+				byte[] hash = MessageDigest.getInstance("SHA-1").digest(data);
+				StringBuilder hexHash = new StringBuilder(hash.length * 2);
+				for (byte hashByte : hash) {
+					hexHash.append(Character.forDigit((hashByte >> 4) & 0x0f, 16)).append(Character.forDigit(hashByte & 0x0f, 16));
+				}
+				return hexHash.toString();
+			} catch (NoSuchAlgorithmException nsae1) {
+				/* every JVM has to support SHA-1. */
+				return String.valueOf(data.length);
+			}
+		}
+
 	}
 
 }
@@ -17,14 +17,18 @@
 
 package net.pterodactylus.sone.web.page;
 
+import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.pterodactylus.sone.web.page.Page.Request.Method;
+import net.pterodactylus.util.io.Renderable;
 import net.pterodactylus.util.logging.Logging;
+import net.pterodactylus.util.template.DataProvider;
 import net.pterodactylus.util.template.Template;
 import freenet.clients.http.LinkEnabledCallback;
 import freenet.clients.http.PageMaker;
@@ -42,6 +46,9 @@ public class TemplatePage implements Page, LinkEnabledCallback {
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(TemplatePage.class);
 
+	/** Marks the place of the rendered template in the page chrome. */
+	private static final String CONTENT_MARKER = "<!-- Sone: template content -->";
+
 	/** The path of the page. */
 	private final String path;
 
@@ -116,22 +123,27 @@ public class TemplatePage implements Page, LinkEnabledCallback {
 			pageNode.addForwardLink("icon", shortcutIcon);
 		}
 
+		DataProvider dataProvider = template.createDataProvider();
 		try {
 			long start = System.nanoTime();
-			processTemplate(request, template);
+			processTemplate(request, dataProvider);
 			long finish = System.nanoTime();
 			logger.log(Level.FINEST, "Template was rendered in " + ((finish - start) / 1000) / 1000.0 + "ms.");
 		} catch (RedirectException re1) {
 			return new RedirectResponse(re1.getTarget());
 		}
 
-		StringWriter stringWriter = new StringWriter();
-		template.render(stringWriter);
-		pageNode.content.addChild("%", stringWriter.toString());
-
-		postProcess(request, template);
-
-		return new Response(200, "OK", "text/html", pageNode.outer.generate());
+		pageNode.content.addChild("%", CONTENT_MARKER);
+		String pageChrome = pageNode.outer.generate();
+		int markerPosition = pageChrome.indexOf(CONTENT_MARKER);
+		if (markerPosition == -1) {
+			logger.log(Level.WARNING, "Could not find content marker in page, rendering template into string.");
+			StringWriter stringWriter = new StringWriter();
+			template.render(dataProvider, stringWriter);
+			postProcess(request, dataProvider);
+			return new Response(200, "OK", "text/html", pageChrome.replace(CONTENT_MARKER, stringWriter.toString()));
+		}
+		return new Response(200, "OK", "text/html", null, new PageRenderer(request, dataProvider, pageChrome.substring(0, markerPosition), pageChrome.substring(markerPosition + CONTENT_MARKER.length())));
 	}
 
 	/**
@@ -155,33 +167,35 @@ public class TemplatePage implements Page, LinkEnabledCallback {
 
 	/**
 	 * Can be overridden when extending classes need to set variables in the
-	 * template before it is rendered.
+	 * template before it is rendered. The variables have to be set in the given
+	 * data provider which only belongs to the current request; the template
+	 * itself is shared by all requests of the page.
 	 *
 	 * @param request
 	 *            The request that is rendered
-	 * @param template
-	 *            The template to set variables in
+	 * @param dataProvider
+	 *            The data provider to set variables in
 	 * @throws RedirectException
 	 *             if the processing page wants to redirect after processing
 	 */
-	protected void processTemplate(Request request, Template template) throws RedirectException {
+	protected void processTemplate(Request request, DataProvider dataProvider) throws RedirectException {
 		/* do nothing. */
 	}
 
 	/**
 	 * This method will be called after
-	 * {@link #processTemplate(net.pterodactylus.sone.web.page.Page.Request, Template)}
+	 * {@link #processTemplate(net.pterodactylus.sone.web.page.Page.Request, DataProvider)}
 	 * has processed the template and the template was rendered. This method
 	 * will not be called if
-	 * {@link #processTemplate(net.pterodactylus.sone.web.page.Page.Request, Template)}
+	 * {@link #processTemplate(net.pterodactylus.sone.web.page.Page.Request, DataProvider)}
 	 * throws a {@link RedirectException}!
 	 *
 	 * @param request
 	 *            The request being processed
-	 * @param template
-	 *            The template that was rendered
+	 * @param dataProvider
+	 *            The data provider the template was rendered with
 	 */
-	protected void postProcess(Request request, Template template) {
+	protected void postProcess(Request request, DataProvider dataProvider) {
 		/* do nothing. */
 	}
 
@@ -209,10 +223,67 @@ public class TemplatePage implements Page, LinkEnabledCallback {
 		return true;
 	}
 
+	/**
+	 * {@link Renderable} that writes the page chrome around the rendered
+	 * template directly into the response and post-processes the template
+	 * once it has been rendered.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private class PageRenderer implements Renderable {
+
+		/** The request being processed. */
+		private final Request request;
+
+		/** The data provider of the request. */
+		private final DataProvider dataProvider;
+
+		/** The page chrome before the template. */
+		private final String prefix;
+
+		/** The page chrome after the template. */
+		private final String suffix;
+
+		/**
+		 * Creates a new page renderer.
+		 *
+		 * @param request
+		 *            The request being processed
+		 * @param dataProvider
+		 *            The data provider of the request
+		 * @param prefix
+		 *            The page chrome before the template
+		 * @param suffix
+		 *            The page chrome after the template
+		 */
+		public PageRenderer(Request request, DataProvider dataProvider, String prefix, String suffix) {
+			this.request = request;
+			this.dataProvider = dataProvider;
+			this.prefix = prefix;
+			this.suffix = suffix;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public void render(Writer writer) throws IOException {
+			writer.write(prefix);
+			long start = System.nanoTime();
+			template.render(dataProvider, writer);
+			long finish = System.nanoTime();
+			logger.log(Level.FINEST, "Template was streamed in " + ((finish - start) / 1000) / 1000.0 + "ms.");
+			writer.write(suffix);
+			postProcess(request, dataProvider);
+		}
+
+	}
+
 	/**
 	 * Exception that can be thrown to signal that a subclassed {@link Page}
 	 * wants to redirect the user during the
-	 * {@link TemplatePage#processTemplate(net.pterodactylus.sone.web.page.Page.Request, Template)}
+	 * {@link TemplatePage#processTemplate(net.pterodactylus.sone.web.page.Page.Request, DataProvider)}
 	 * method call.
 	 *
 	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
@@ -561,9 +561,16 @@ function ajaxifyNotification(notification) {
 	return notification;
 }
 
+var statusChangeSequence = "";
+
 function getStatus() {
-	$.getJSON("getStatus.ajax", {"loadAllSones": isKnownSonesPage()}, function(data, textStatus) {
-		if ((data != null) && data.success) {
+	$.getJSON("pollStatus.ajax", {"loadAllSones": isKnownSonesPage(), "since": statusChangeSequence, "timeout": 30}, function(data, textStatus) {
+		if ((data != null) && data.success && data.unchanged) {
+			/* nothing has changed, ask again when the server says so. */
+			statusChangeSequence = data.sequence;
+			setTimeout(getStatus, data.wait);
+		} else if ((data != null) && data.success) {
+			statusChangeSequence = data.sequence;
 			/* process Sone information. */
 			$.each(data.sones, function(index, value) {
 				updateSoneStatus(value.id, value.name, value.status, value.modified, value.locked, value.lastUpdated);
@@ -583,16 +590,13 @@ function getStatus() {
 			$.each(data.removedNotifications, function(index, value) {
 				$("#sone #notification-area .notification#" + value.id).slideUp();
 			});
-			/* process new posts. */
-			$.each(data.newPosts, function(index, value) {
-				loadNewPost(value);
-			});
-			/* process new replies. */
-			$.each(data.newReplies, function(index, value) {
-				loadNewReply(value);
+			/* process new posts, then new replies (which may belong to them). */
+			var newReplies = data.newReplies;
+			loadNewPosts(data.newPosts, function() {
+				loadNewReplies(newReplies);
 			});
-			/* do it again in 5 seconds. */
-			setTimeout(getStatus, 5000);
+			/* ask again when the server says so. */
+			setTimeout(getStatus, data.wait);
 		} else {
 			/* data.success was false, wait 30 seconds. */
 			setTimeout(getStatus, 30000);
@@ -675,74 +679,179 @@ function isKnownSonesPage() {
 var loadedPosts = {};
 var loadedReplies = {};
 
-function loadNewPost(postId) {
-	if (postId in loadedPosts) {
+/** The maximum number of posts or replies to request at once. */
+var maximumBatchSize = 100;
+
+/**
+ * Loads the given elements in batches of at most maximumBatchSize elements.
+ * The batches are requested one after the other; the callback is called once
+ * the last batch has been processed.
+ *
+ * @param ids
+ *            The IDs of the elements to load
+ * @param loadBatch
+ *            Function that loads a batch of IDs and calls its second
+ *            parameter once it is done
+ * @param callback
+ *            Function to call when all batches have been loaded (may be
+ *            undefined)
+ */
+function loadInBatches(ids, loadBatch, callback) {
+	if (ids.length == 0) {
+		if (callback != undefined) {
+			callback();
+		}
 		return;
 	}
-	$.getJSON("getPost.ajax", { "post" : postId }, function(data, textStatus) {
-		if ((data != null) && data.success) {
-			if (data.post.id in loadedPosts) {
-				return;
-			}
-			loadedPosts[data.post.id] = true;
-			if (!isIndexPage() && !(isViewSonePage() && ((getShownSoneId() == data.post.sone) || (getShownSoneId() == data.post.recipient)))) {
-				return;
-			}
-			var firstOlderPost = null;
-			$("#sone .post").each(function() {
-				if (getPostTime(this) < data.post.time) {
-					firstOlderPost = $(this);
-					return false;
+	loadBatch(ids.slice(0, maximumBatchSize), function() {
+		loadInBatches(ids.slice(maximumBatchSize), loadBatch, callback);
+	});
+}
+
+/**
+ * Loads all posts with the given IDs that have not been loaded yet and
+ * inserts them into the page.
+ *
+ * @param postIds
+ *            The IDs of the posts to load
+ * @param callback
+ *            Function to call when all posts have been loaded (may be
+ *            undefined)
+ */
+function loadNewPosts(postIds, callback) {
+	var missingPostIds = $.grep(postIds, function(postId) {
+		return !(postId in loadedPosts);
+	});
+	loadInBatches(missingPostIds, function(batch, batchDone) {
+		$.ajax({
+			"url": "getPosts.ajax",
+			"dataType": "json",
+			"data": { "posts": batch.join(",") },
+			"success": function(data, textStatus) {
+				if ((data != null) && data.success) {
+					$.each(data.posts, function(index, post) {
+						insertNewPost(post);
+					});
 				}
-			});
-			newPost = $(data.post.html).addClass("hidden");
-			if (firstOlderPost != null) {
-				newPost.insertBefore(firstOlderPost);
-			} else {
-				$("#sone #posts").append(newPost);
-			}
-			ajaxifyPost(newPost);
-			newPost.slideDown();
-			setActivity();
+			},
+			"complete": batchDone
+		});
+	}, callback);
+}
+
+/**
+ * Loads the post with the given ID and inserts it into the page.
+ *
+ * @param postId
+ *            The ID of the post to load
+ */
+function loadNewPost(postId) {
+	loadNewPosts([ postId ]);
+}
+
+/**
+ * Inserts the given post into the page, if it belongs on the current page.
+ *
+ * @param post
+ *            The post to insert, as returned by getPosts.ajax
+ */
+function insertNewPost(post) {
+	if (post.id in loadedPosts) {
+		return;
+	}
+	loadedPosts[post.id] = true;
+	if (!isIndexPage() && !(isViewSonePage() && ((getShownSoneId() == post.sone) || (getShownSoneId() == post.recipient)))) {
+		return;
+	}
+	var firstOlderPost = null;
+	$("#sone .post").each(function() {
+		if (getPostTime(this) < post.time) {
+			firstOlderPost = $(this);
+			return false;
 		}
 	});
+	newPost = $(post.html).addClass("hidden");
+	if (firstOlderPost != null) {
+		newPost.insertBefore(firstOlderPost);
+	} else {
+		$("#sone #posts").append(newPost);
+	}
+	ajaxifyPost(newPost);
+	newPost.slideDown();
+	setActivity();
 }
 
+/**
+ * Loads all replies with the given IDs that have not been loaded yet and
+ * inserts them into the page.
+ *
+ * @param replyIds
+ *            The IDs of the replies to load
+ */
+function loadNewReplies(replyIds) {
+	var missingReplyIds = $.grep(replyIds, function(replyId) {
+		return !(replyId in loadedReplies);
+	});
+	loadInBatches(missingReplyIds, function(batch, batchDone) {
+		$.ajax({
+			"url": "getReplies.ajax",
+			"dataType": "json",
+			"data": { "replies": batch.join(",") },
+			"success": function(data, textStatus) {
+				if ((data != null) && data.success) {
+					$.each(data.replies, function(index, reply) {
+						insertNewReply(reply);
+					});
+				}
+			},
+			"complete": batchDone
+		});
+	});
+}
+
+/**
+ * Loads the reply with the given ID and inserts it into the page.
+ *
+ * @param replyId
+ *            The ID of the reply to load
+ */
 function loadNewReply(replyId) {
-	if (replyId in loadedReplies) {
+	loadNewReplies([ replyId ]);
+}
+
+/**
+ * Inserts the given reply into the page, below its post.
+ *
+ * @param reply
+ *            The reply to insert, as returned by getReplies.ajax
+ */
+function insertNewReply(reply) {
+	if (reply.id in loadedReplies) {
 		return;
 	}
-	$.getJSON("getReply.ajax", { "reply": replyId }, function(data, textStatus) {
-		/* find post. */
-		if ((data != null) && data.success) {
-			if (data.reply.id in loadedReplies) {
-				return;
-			}
-			loadedReplies[data.reply.id] = true;
-			$("#sone .post#" + data.reply.postId).each(function() {
-				var firstNewerReply = null;
-				$(this).find(".replies .reply").each(function() {
-					if (getReplyTime(this) > data.reply.time) {
-						firstNewerReply = $(this);
-						return false;
-					}
-				});
-				newReply = $(data.reply.html).addClass("hidden");
-				if (firstNewerReply != null) {
-					newReply.insertBefore(firstNewerReply);
-				} else {
-					if ($(this).find(".replies .create-reply")) {
-						$(this).find(".replies .create-reply").before(newReply);
-					} else {
-						$(this).find(".replies").append(newReply);
-					}
-				}
-				ajaxifyReply(newReply);
-				newReply.slideDown();
-				setActivity();
+	loadedReplies[reply.id] = true;
+	$("#sone .post#" + reply.postId).each(function() {
+		var firstNewerReply = null;
+		$(this).find(".replies .reply").each(function() {
+			if (getReplyTime(this) > reply.time) {
+				firstNewerReply = $(this);
 				return false;
-			});
+			}
+		});
+		newReply = $(reply.html).addClass("hidden");
+		if (firstNewerReply != null) {
+			newReply.insertBefore(firstNewerReply);
+		} else {
+			if ($(this).find(".replies .create-reply")) {
+				$(this).find(".replies .create-reply").before(newReply);
+			} else {
+				$(this).find(".replies").append(newReply);
+			}
 		}
+		ajaxifyReply(newReply);
+		newReply.slideDown();
+		setActivity();
+		return false;
 	});
 }
 
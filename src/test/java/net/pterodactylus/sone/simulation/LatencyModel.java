@@ -0,0 +1,81 @@
+/*
+ * Sone - LatencyModel.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.util.Random;
+
+/**
+ * Decides how long a simulated operation takes and whether it fails. The
+ * latencies are exponentially distributed around the configured mean.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class LatencyModel {
+
+	/** The random number generator. */
+	private final Random random;
+
+	/** The mean latency (in milliseconds). */
+	private final long meanLatency;
+
+	/** The probability of a failure. */
+	private final double failureRate;
+
+	/**
+	 * Creates a new latency model.
+	 *
+	 * @param seed
+	 *            The seed for the random number generator
+	 * @param meanLatency
+	 *            The mean latency (in milliseconds)
+	 * @param failureRate
+	 *            The probability of a failure (between 0 and 1)
+	 */
+	public LatencyModel(long seed, long meanLatency, double failureRate) {
+		this.random = new Random(seed);
+		this.meanLatency = meanLatency;
+		this.failureRate = failureRate;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Returns the latency of the next operation.
+	 *
+	 * @return The latency of the next operation (in milliseconds)
+	 */
+	public synchronized long nextLatency() {
+		if (meanLatency <= 0) {
+			return 0;
+		}
+		return (long) (-Math.log(1 - random.nextDouble()) * meanLatency);
+	}
+
+	/**
+	 * Returns whether the next operation fails.
+	 *
+	 * @return {@code true} if the next operation fails, {@code false}
+	 *         otherwise
+	 */
+	public synchronized boolean nextFailure() {
+		return random.nextDouble() < failureRate;
+	}
+
+}
@@ -0,0 +1,384 @@
+/*
+ * Sone - SimulatedFreenetInterface.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import net.pterodactylus.sone.core.FreenetInterface;
+import net.pterodactylus.sone.core.SoneDownloader;
+import net.pterodactylus.sone.core.SoneException;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.freenet.ByteArrayBucket;
+import net.pterodactylus.util.collection.Pair;
+import freenet.client.ClientMetadata;
+import freenet.client.FetchResult;
+import freenet.keys.FreenetURI;
+import freenet.support.Base64;
+import freenet.support.api.Bucket;
+
+/**
+ * {@link FreenetInterface} that does not talk to a Freenet node. Fetches of a
+ * Sone return a generated “sone.xml” for the latest edition known to the
+ * {@link SimulatedWebOfTrust}, after a simulated latency; a configurable
+ * fraction of fetches fails. Inserts succeed after a simulated latency
+ * without storing anything.
+ * <p>
+ * USK subscriptions are recorded; {@link #announceEditions()} notifies the
+ * subscribers about new editions the way the node would.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SimulatedFreenetInterface extends FreenetInterface {
+
+	/** The simulated Web of Trust that knows the latest editions. */
+	private final SimulatedWebOfTrust webOfTrust;
+
+	/** The latency model for fetches. */
+	private final LatencyModel fetchLatencyModel;
+
+	/** The latency model for inserts. */
+	private final LatencyModel insertLatencyModel;
+
+	/** The number of posts in every generated Sone. */
+	private final int postsPerSone;
+
+	/** The length of the text of generated posts and replies. */
+	private final int textLength;
+
+	/** The statistics of the fetches. */
+	private final Statistics fetchStatistics = new Statistics("Fetches");
+
+	/** The statistics of the inserts. */
+	private final Statistics insertStatistics = new Statistics("Inserts");
+
+	/** The time between publishing and fetching an edition. */
+	private final Statistics updateStatistics = new Statistics("Update delay");
+
+	/** The subscribed Sones and their downloaders, by Sone ID. */
+	private final Map<String, Pair<Sone, SoneDownloader>> subscriptions = new HashMap<String, Pair<Sone, SoneDownloader>>();
+
+	/** The last inserted edition, by insert key. */
+	private final Map<String, Long> insertedEditions = new HashMap<String, Long>();
+
+	/** The random number generator for generated keys. */
+	private final Random keyRandom;
+
+	/**
+	 * Creates a new simulated Freenet interface.
+	 *
+	 * @param seed
+	 *            The seed for the random number generator for generated keys
+	 * @param webOfTrust
+	 *            The simulated Web of Trust that knows the latest editions
+	 * @param fetchLatencyModel
+	 *            The latency model for fetches
+	 * @param insertLatencyModel
+	 *            The latency model for inserts
+	 * @param postsPerSone
+	 *            The number of posts in every generated Sone
+	 * @param textLength
+	 *            The length of the text of generated posts and replies
+	 */
+	public SimulatedFreenetInterface(long seed, SimulatedWebOfTrust webOfTrust, LatencyModel fetchLatencyModel, LatencyModel insertLatencyModel, int postsPerSone, int textLength) {
+		/* all methods that would use the node or the client are overridden. */
+		super(null, null);
+		this.keyRandom = new Random(seed);
+		this.webOfTrust = webOfTrust;
+		this.fetchLatencyModel = fetchLatencyModel;
+		this.insertLatencyModel = insertLatencyModel;
+		this.postsPerSone = postsPerSone;
+		this.textLength = textLength;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the statistics of the fetches.
+	 *
+	 * @return The statistics of the fetches
+	 */
+	public Statistics getFetchStatistics() {
+		return fetchStatistics;
+	}
+
+	/**
+	 * Returns the statistics of the inserts.
+	 *
+	 * @return The statistics of the inserts
+	 */
+	public Statistics getInsertStatistics() {
+		return insertStatistics;
+	}
+
+	/**
+	 * Returns the statistics of the time between publishing an edition and
+	 * fetching it.
+	 *
+	 * @return The update delay statistics
+	 */
+	public Statistics getUpdateStatistics() {
+		return updateStatistics;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Pair<FreenetURI, FetchResult> fetchUri(FreenetURI uri) {
+		long startTime = System.currentTimeMillis();
+		simulateLatency(fetchLatencyModel);
+		String id = Base64.encode(uri.getRoutingKey());
+		long edition = webOfTrust.getLatestEdition(id);
+		if ((edition < 0) || fetchLatencyModel.nextFailure()) {
+			fetchStatistics.recordFailure();
+			return null;
+		}
+		ByteArrayBucket soneBucket = new ByteArrayBucket();
+		OutputStream soneOutputStream = null;
+		try {
+			soneOutputStream = soneBucket.getOutputStream();
+			soneOutputStream.write(createSoneXml(id, edition).getBytes("UTF-8"));
+		} catch (IOException ioe1) {
+			fetchStatistics.recordFailure();
+			return null;
+		} finally {
+			soneBucket.setReadOnly();
+		}
+		long now = System.currentTimeMillis();
+		fetchStatistics.recordSuccess(now - startTime);
+		updateStatistics.recordSuccess(now - webOfTrust.getLatestEditionTime(id));
+		return new Pair<FreenetURI, FetchResult>(uri.setSuggestedEdition(edition), new FetchResult(new ClientMetadata("text/xml"), soneBucket));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public FreenetURI insertFile(Bucket data, String contentType, String filenameHint) throws SoneException {
+		long startTime = System.currentTimeMillis();
+		simulateLatency(insertLatencyModel);
+		if (insertLatencyModel.nextFailure()) {
+			insertStatistics.recordFailure();
+			throw new SoneException(null, "Simulated failure.");
+		}
+		insertStatistics.recordSuccess(System.currentTimeMillis() - startTime);
+		return FreenetURI.EMPTY_CHK_URI;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public FreenetURI insertDirectory(FreenetURI insertUri, HashMap<String, Object> manifestEntries, String defaultFile) throws SoneException {
+		long startTime = System.currentTimeMillis();
+		simulateLatency(insertLatencyModel);
+		if (insertLatencyModel.nextFailure()) {
+			insertStatistics.recordFailure();
+			throw new SoneException(null, "Simulated failure.");
+		}
+		long edition;
+		synchronized (insertedEditions) {
+			String insertKey = Base64.encode(insertUri.getRoutingKey());
+			Long lastEdition = insertedEditions.get(insertKey);
+			edition = Math.max(insertUri.getSuggestedEdition(), (lastEdition == null) ? 0 : (lastEdition + 1));
+			insertedEditions.put(insertKey, edition);
+		}
+		insertStatistics.recordSuccess(System.currentTimeMillis() - startTime);
+		return insertUri.setSuggestedEdition(edition);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[] generateKeyPair() {
+		byte[] privateKey = new byte[32];
+		byte[] publicKey = new byte[32];
+		byte[] cryptoKey = new byte[32];
+		synchronized (keyRandom) {
+			keyRandom.nextBytes(privateKey);
+			keyRandom.nextBytes(publicKey);
+			keyRandom.nextBytes(cryptoKey);
+		}
+		return new String[] { "SSK@" + Base64.encode(publicKey) + "," + Base64.encode(cryptoKey) + ",AQACAAE/", "SSK@" + Base64.encode(privateKey) + "," + Base64.encode(cryptoKey) + ",AQECAAE/" };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerUsk(Sone sone, SoneDownloader soneDownloader) {
+		synchronized (subscriptions) {
+			subscriptions.put(sone.getId(), new Pair<Sone, SoneDownloader>(sone, soneDownloader));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unregisterUsk(Sone sone) {
+		synchronized (subscriptions) {
+			subscriptions.remove(sone.getId());
+		}
+	}
+
+	/**
+	 * Notifies the downloaders of all subscribed Sones whose latest edition is
+	 * newer than the edition the Sone knows, like the node does when it finds
+	 * a new edition of a subscribed USK.
+	 *
+	 * @return The number of notified Sones
+	 */
+	public int announceEditions() {
+		List<Pair<Sone, SoneDownloader>> currentSubscriptions;
+		synchronized (subscriptions) {
+			currentSubscriptions = new ArrayList<Pair<Sone, SoneDownloader>>(subscriptions.values());
+		}
+		int announcedEditions = 0;
+		for (Pair<Sone, SoneDownloader> subscription : currentSubscriptions) {
+			final Sone sone = subscription.getLeft();
+			final SoneDownloader soneDownloader = subscription.getRight();
+			long edition = webOfTrust.getLatestEdition(sone.getId());
+			if (edition <= sone.getLatestEdition()) {
+				continue;
+			}
+			sone.setLatestEdition(edition);
+			new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					soneDownloader.fetchSone(sone);
+				}
+			}, "Sone Downloader").start();
+			++announcedEditions;
+		}
+		return announcedEditions;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Waits for the next latency of the given latency model.
+	 *
+	 * @param latencyModel
+	 *            The latency model
+	 */
+	private static void simulateLatency(LatencyModel latencyModel) {
+		try {
+			Thread.sleep(latencyModel.nextLatency());
+		} catch (InterruptedException ie1) {
+			/* ignore. */
+		}
+	}
+
+	/**
+	 * Creates the “sone.xml” of the given edition of the Sone with the given
+	 * ID. The Sone contains the posts of its latest editions, one post per
+	 * edition, and one reply to another Sone per edition.
+	 *
+	 * @param id
+	 *            The ID of the Sone
+	 * @param edition
+	 *            The edition of the Sone
+	 * @return The XML of the Sone
+	 * @throws UnsupportedEncodingException
+	 *             if UTF-8 is not supported
+	 */
+	private String createSoneXml(String id, long edition) throws UnsupportedEncodingException {
+		long editionTime = webOfTrust.getLatestEditionTime(id);
+		String nickname = webOfTrust.getNickname(id);
+		StringBuilder soneXml = new StringBuilder(postsPerSone * (textLength + 256) * 2 + 1024);
+		soneXml.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<sone>\n");
+		soneXml.append("<time>").append(editionTime).append("</time>\n");
+		soneXml.append("<client><name>Sone</name><version>Simulation</version></client>\n");
+		soneXml.append("<profile><first-name>").append(nickname).append("</first-name></profile>\n");
+		soneXml.append("<posts>\n");
+		long firstEdition = Math.max(0, edition - postsPerSone + 1);
+		for (long postEdition = firstEdition; postEdition <= edition; ++postEdition) {
+			soneXml.append("<post><id>").append(createId(id, "post", postEdition)).append("</id>");
+			soneXml.append("<recipient></recipient>");
+			soneXml.append("<time>").append(editionTime - (edition - postEdition) * 60 * 1000).append("</time>");
+			soneXml.append("<text>").append(createText(nickname, postEdition)).append("</text></post>\n");
+		}
+		soneXml.append("</posts>\n<replies>\n");
+		List<String> repliedIds = webOfTrust.getRandomIdentityIds((int) (edition - firstEdition + 1));
+		long replyEdition = firstEdition;
+		for (String repliedId : repliedIds) {
+			soneXml.append("<reply><id>").append(createId(id, "reply", replyEdition)).append("</id>");
+			soneXml.append("<post-id>").append(createId(repliedId, "post", webOfTrust.getLatestEdition(repliedId))).append("</post-id>");
+			soneXml.append("<time>").append(editionTime - (edition - replyEdition) * 60 * 1000).append("</time>");
+			soneXml.append("<text>").append(createText(nickname, replyEdition)).append("</text></reply>\n");
+			++replyEdition;
+		}
+		soneXml.append("</replies>\n<post-likes></post-likes>\n<reply-likes></reply-likes>\n</sone>\n");
+		return soneXml.toString();
+	}
+
+	/**
+	 * Creates the ID of a post or reply.
+	 *
+	 * @param soneId
+	 *            The ID of the Sone
+	 * @param type
+	 *            The type of the element
+	 * @param edition
+	 *            The edition that created the element
+	 * @return The ID of the element
+	 * @throws UnsupportedEncodingException
+	 *             if UTF-8 is not supported
+	 */
+	private static String createId(String soneId, String type, long edition) throws UnsupportedEncodingException {
+		return UUID.nameUUIDFromBytes((soneId + "/" + type + "/" + edition).getBytes("UTF-8")).toString();
+	}
+
+	/**
+	 * Creates the text of a post or reply.
+	 *
+	 * @param nickname
+	 *            The nickname of the author
+	 * @param edition
+	 *            The edition that created the post or reply
+	 * @return The text
+	 */
+	private String createText(String nickname, long edition) {
+		StringBuilder text = new StringBuilder(textLength + 64);
+		text.append(nickname).append(" wrote this in edition ").append(edition).append(".");
+		while (text.length() < textLength) {
+			text.append(" Lorem ipsum dolor sit amet.");
+		}
+		return text.toString();
+	}
+
+}
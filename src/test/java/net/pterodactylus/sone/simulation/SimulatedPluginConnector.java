@@ -0,0 +1,116 @@
+/*
+ * Sone - SimulatedPluginConnector.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.freenet.wot.PluginConnector;
+import net.pterodactylus.sone.freenet.wot.PluginException;
+import freenet.support.SimpleFieldSet;
+import freenet.support.api.Bucket;
+
+/**
+ * {@link PluginConnector} that does not talk to a Freenet node but sends all
+ * requests to a {@link SimulatedWebOfTrust}. Replies are delivered after a
+ * simulated latency; a configurable fraction of requests is answered with an
+ * error.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SimulatedPluginConnector extends PluginConnector {
+
+	/** The simulated Web of Trust. */
+	private final SimulatedWebOfTrust webOfTrust;
+
+	/** The latency model for requests. */
+	private final LatencyModel latencyModel;
+
+	/** The statistics of the requests. */
+	private final Statistics statistics = new Statistics("WoT requests");
+
+	/** The executor that delivers the replies. */
+	private final ScheduledExecutorService replyExecutor = Executors.newScheduledThreadPool(4);
+
+	/**
+	 * Creates a new simulated plugin connector.
+	 *
+	 * @param webOfTrust
+	 *            The simulated Web of Trust
+	 * @param latencyModel
+	 *            The latency model for requests
+	 */
+	public SimulatedPluginConnector(SimulatedWebOfTrust webOfTrust, LatencyModel latencyModel) {
+		/* requests are never sent to the node, so no respirator is needed. */
+		super(null);
+		this.webOfTrust = webOfTrust;
+		this.latencyModel = latencyModel;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the statistics of the requests. The durations include the
+	 * simulated latency and the time needed to create the reply.
+	 *
+	 * @return The statistics of the requests
+	 */
+	public Statistics getStatistics() {
+		return statistics;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendRequest(final String pluginName, final String identifier, final SimpleFieldSet fields, Bucket data) throws PluginException {
+		final long startTime = System.currentTimeMillis();
+		final boolean failure = latencyModel.nextFailure();
+		replyExecutor.schedule(new Runnable() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void run() {
+				SimpleFieldSet reply;
+				if (failure) {
+					reply = webOfTrust.createError(fields.get("Message"), "Simulated failure.");
+					statistics.recordFailure();
+				} else {
+					reply = webOfTrust.handleMessage(fields);
+					statistics.recordSuccess(System.currentTimeMillis() - startTime);
+				}
+				onReply(pluginName, identifier, reply, null);
+			}
+		}, latencyModel.nextLatency(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops delivering replies.
+	 */
+	public void stop() {
+		replyExecutor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Sone - SimulatedWebOfTrust.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import freenet.support.Base64;
+import freenet.support.SimpleFieldSet;
+
+/**
+ * In-memory stand-in for the Web of Trust plugin. It creates a number of own
+ * identities and a number of other identities, all with the “Sone” context,
+ * and lets every own identity trust a random subset of the other identities.
+ * Every identity has a “Sone.LatestEdition” property that is advanced by
+ * {@link #publishEditions(double)} to simulate Sones being updated.
+ * <p>
+ * The messages understood by the real plugin are answered by
+ * {@link #handleMessage(SimpleFieldSet)}, using the same reply format.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SimulatedWebOfTrust {
+
+	/** The random number generator. */
+	/* synchronize access on this. */
+	private final Random random;
+
+	/** The own identities. */
+	private final List<SimulatedIdentity> ownIdentities = new ArrayList<SimulatedIdentity>();
+
+	/** The other identities. */
+	private final List<SimulatedIdentity> identities = new ArrayList<SimulatedIdentity>();
+
+	/** All identities, by ID. */
+	private final Map<String, SimulatedIdentity> allIdentities = new HashMap<String, SimulatedIdentity>();
+
+	/** The identities trusted by each own identity, by own identity ID. */
+	private final Map<String, List<SimulatedIdentity>> trustLists = new HashMap<String, List<SimulatedIdentity>>();
+
+	/**
+	 * Creates a new simulated Web of Trust.
+	 *
+	 * @param seed
+	 *            The seed for the random number generator
+	 * @param ownIdentityCount
+	 *            The number of own identities
+	 * @param identityCount
+	 *            The number of other identities
+	 * @param trustedIdentityCount
+	 *            The number of identities each own identity trusts
+	 */
+	public SimulatedWebOfTrust(long seed, int ownIdentityCount, int identityCount, int trustedIdentityCount) {
+		random = new Random(seed);
+		for (int ownIdentityIndex = 0; ownIdentityIndex < ownIdentityCount; ++ownIdentityIndex) {
+			SimulatedIdentity ownIdentity = createIdentity("Own" + ownIdentityIndex, true);
+			ownIdentities.add(ownIdentity);
+		}
+		for (int identityIndex = 0; identityIndex < identityCount; ++identityIndex) {
+			identities.add(createIdentity("Identity" + identityIndex, false));
+		}
+		for (SimulatedIdentity ownIdentity : ownIdentities) {
+			List<SimulatedIdentity> trustedIdentities = new ArrayList<SimulatedIdentity>(identities);
+			Collections.shuffle(trustedIdentities, random);
+			trustLists.put(ownIdentity.id, new ArrayList<SimulatedIdentity>(trustedIdentities.subList(0, Math.min(trustedIdentityCount, trustedIdentities.size()))));
+		}
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of identities that are trusted by at least one own
+	 * identity.
+	 *
+	 * @return The number of trusted identities
+	 */
+	public synchronized int getTrustedIdentityCount() {
+		Set<String> trustedIdentityIds = new HashSet<String>();
+		for (List<SimulatedIdentity> trustList : trustLists.values()) {
+			for (SimulatedIdentity identity : trustList) {
+				trustedIdentityIds.add(identity.id);
+			}
+		}
+		return trustedIdentityIds.size();
+	}
+
+	/**
+	 * Returns the latest edition of the identity with the given ID.
+	 *
+	 * @param id
+	 *            The ID of the identity
+	 * @return The latest edition, or {@code -1} if there is no such identity
+	 */
+	public synchronized long getLatestEdition(String id) {
+		SimulatedIdentity identity = allIdentities.get(id);
+		return (identity == null) ? -1 : identity.edition;
+	}
+
+	/**
+	 * Returns the time the latest edition of the identity with the given ID
+	 * was published.
+	 *
+	 * @param id
+	 *            The ID of the identity
+	 * @return The time of the latest edition (in milliseconds since the
+	 *         epoch), or {@code 0} if there is no such identity
+	 */
+	public synchronized long getLatestEditionTime(String id) {
+		SimulatedIdentity identity = allIdentities.get(id);
+		return (identity == null) ? 0 : identity.editionTime;
+	}
+
+	/**
+	 * Returns the nickname of the identity with the given ID.
+	 *
+	 * @param id
+	 *            The ID of the identity
+	 * @return The nickname, or {@code null} if there is no such identity
+	 */
+	public synchronized String getNickname(String id) {
+		SimulatedIdentity identity = allIdentities.get(id);
+		return (identity == null) ? null : identity.nickname;
+	}
+
+	/**
+	 * Returns the IDs of randomly selected identities that are not own
+	 * identities.
+	 *
+	 * @param count
+	 *            The maximum number of IDs to return
+	 * @return The IDs of random identities
+	 */
+	public synchronized List<String> getRandomIdentityIds(int count) {
+		List<String> identityIds = new ArrayList<String>();
+		for (int index = 0; (index < count) && !identities.isEmpty(); ++index) {
+			identityIds.add(identities.get(random.nextInt(identities.size())).id);
+		}
+		return identityIds;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Publishes a new edition for a random fraction of the other identities.
+	 *
+	 * @param fraction
+	 *            The fraction of identities to update (between 0 and 1)
+	 * @return The number of updated identities
+	 */
+	public synchronized int publishEditions(double fraction) {
+		int updatedIdentities = 0;
+		long now = System.currentTimeMillis();
+		for (SimulatedIdentity identity : identities) {
+			if (random.nextDouble() < fraction) {
+				++identity.edition;
+				identity.editionTime = now;
+				identity.properties.put("Sone.LatestEdition", String.valueOf(identity.edition));
+				++updatedIdentities;
+			}
+		}
+		return updatedIdentities;
+	}
+
+	/**
+	 * Handles a message sent to the Web of Trust plugin and returns the reply.
+	 *
+	 * @param fields
+	 *            The fields of the message
+	 * @return The fields of the reply
+	 */
+	public synchronized SimpleFieldSet handleMessage(SimpleFieldSet fields) {
+		String message = fields.get("Message");
+		SimpleFieldSet reply = new SimpleFieldSet(true);
+		if ("Ping".equals(message)) {
+			reply.putOverwrite("Message", "Pong");
+		} else if ("GetOwnIdentities".equals(message)) {
+			reply.putOverwrite("Message", "OwnIdentities");
+			int identityCounter = 0;
+			for (SimulatedIdentity ownIdentity : ownIdentities) {
+				putIdentity(reply, identityCounter++, ownIdentity);
+			}
+		} else if ("GetIdentitiesByScore".equals(message)) {
+			List<SimulatedIdentity> trustList = trustLists.get(fields.get("TreeOwner"));
+			if (trustList == null) {
+				return createError(message, "Unknown tree owner.");
+			}
+			String context = fields.get("Context");
+			reply.putOverwrite("Message", "Identities");
+			int identityCounter = 0;
+			for (SimulatedIdentity identity : trustList) {
+				if ((context == null) || (context.length() == 0) || identity.contexts.contains(context)) {
+					putIdentity(reply, identityCounter++, identity);
+				}
+			}
+		} else if ("AddContext".equals(message) || "RemoveContext".equals(message)) {
+			SimulatedIdentity ownIdentity = getOwnIdentity(fields.get("Identity"));
+			if (ownIdentity == null) {
+				return createError(message, "Unknown identity.");
+			}
+			if ("AddContext".equals(message)) {
+				ownIdentity.contexts.add(fields.get("Context"));
+				reply.putOverwrite("Message", "ContextAdded");
+			} else {
+				ownIdentity.contexts.remove(fields.get("Context"));
+				reply.putOverwrite("Message", "ContextRemoved");
+			}
+		} else if ("SetProperty".equals(message) || "RemoveProperty".equals(message)) {
+			SimulatedIdentity ownIdentity = getOwnIdentity(fields.get("Identity"));
+			if (ownIdentity == null) {
+				return createError(message, "Unknown identity.");
+			}
+			if ("SetProperty".equals(message)) {
+				ownIdentity.properties.put(fields.get("Property"), fields.get("Value"));
+				reply.putOverwrite("Message", "PropertyAdded");
+			} else {
+				ownIdentity.properties.remove(fields.get("Property"));
+				reply.putOverwrite("Message", "PropertyRemoved");
+			}
+		} else if ("GetProperty".equals(message)) {
+			SimulatedIdentity identity = allIdentities.get(fields.get("Identity"));
+			if (identity == null) {
+				return createError(message, "Unknown identity.");
+			}
+			reply.putOverwrite("Message", "PropertyValue");
+			String value = identity.properties.get(fields.get("Property"));
+			if (value != null) {
+				reply.putOverwrite("Property", value);
+			}
+		} else {
+			return createError(message, "Unknown message.");
+		}
+		return reply;
+	}
+
+	/**
+	 * Creates an error reply.
+	 *
+	 * @param message
+	 *            The name of the message that caused the error
+	 * @param description
+	 *            The description of the error
+	 * @return The error reply
+	 */
+	public SimpleFieldSet createError(String message, String description) {
+		SimpleFieldSet reply = new SimpleFieldSet(true);
+		reply.putOverwrite("Message", "Error");
+		reply.putOverwrite("OriginalMessage", String.valueOf(message));
+		reply.putOverwrite("Description", description);
+		return reply;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates a new identity with random keys.
+	 *
+	 * @param nickname
+	 *            The nickname of the identity
+	 * @param own
+	 *            {@code true} to create an own identity, {@code false} to
+	 *            create another identity
+	 * @return The created identity
+	 */
+	private SimulatedIdentity createIdentity(String nickname, boolean own) {
+		byte[] routingKey = new byte[32];
+		byte[] cryptoKey = new byte[32];
+		byte[] privateKey = new byte[32];
+		random.nextBytes(routingKey);
+		random.nextBytes(cryptoKey);
+		random.nextBytes(privateKey);
+		SimulatedIdentity identity = new SimulatedIdentity();
+		identity.id = Base64.encode(routingKey);
+		identity.nickname = nickname;
+		identity.requestUri = "USK@" + identity.id + "," + Base64.encode(cryptoKey) + ",AQACAAE/WoT/0";
+		identity.contexts.add("Sone");
+		if (own) {
+			identity.insertUri = "USK@" + Base64.encode(privateKey) + "," + Base64.encode(cryptoKey) + ",AQECAAE/WoT/0";
+		} else {
+			identity.edition = random.nextInt(100);
+			identity.editionTime = System.currentTimeMillis();
+			identity.properties.put("Sone.LatestEdition", String.valueOf(identity.edition));
+		}
+		allIdentities.put(identity.id, identity);
+		return identity;
+	}
+
+	/**
+	 * Returns the own identity with the given ID.
+	 *
+	 * @param id
+	 *            The ID of the own identity
+	 * @return The own identity, or {@code null} if there is no such own
+	 *         identity
+	 */
+	private SimulatedIdentity getOwnIdentity(String id) {
+		SimulatedIdentity identity = allIdentities.get(id);
+		return ((identity == null) || (identity.insertUri == null)) ? null : identity;
+	}
+
+	/**
+	 * Stores the given identity in the given reply, in the format used by the
+	 * Web of Trust plugin.
+	 *
+	 * @param reply
+	 *            The reply to store the identity in
+	 * @param index
+	 *            The index of the identity in the reply
+	 * @param identity
+	 *            The identity to store
+	 */
+	private static void putIdentity(SimpleFieldSet reply, int index, SimulatedIdentity identity) {
+		reply.putOverwrite("Identity" + index, identity.id);
+		reply.putOverwrite("Nickname" + index, identity.nickname);
+		reply.putOverwrite("RequestURI" + index, identity.requestUri);
+		if (identity.insertUri != null) {
+			reply.putOverwrite("InsertURI" + index, identity.insertUri);
+		}
+		int contextCounter = 0;
+		for (String context : identity.contexts) {
+			reply.putOverwrite("Contexts" + index + ".Context" + contextCounter++, context);
+		}
+		int propertyCounter = 0;
+		for (Entry<String, String> property : identity.properties.entrySet()) {
+			reply.putOverwrite("Properties" + index + ".Property" + propertyCounter + ".Name", property.getKey());
+			reply.putOverwrite("Properties" + index + ".Property" + propertyCounter++ + ".Value", property.getValue());
+		}
+	}
+
+	/**
+	 * Container for the data of a simulated identity.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class SimulatedIdentity {
+
+		/** The ID of the identity. */
+		String id;
+
+		/** The nickname of the identity. */
+		String nickname;
+
+		/** The request URI of the identity. */
+		String requestUri;
+
+		/** The insert URI of an own identity. */
+		String insertUri;
+
+		/** The contexts of the identity. */
+		final Set<String> contexts = new HashSet<String>();
+
+		/** The properties of the identity. */
+		final Map<String, String> properties = new HashMap<String, String>();
+
+		/** The latest edition of the identity’s Sone. */
+		long edition;
+
+		/** The time the latest edition was published. */
+		long editionTime;
+
+	}
+
+}
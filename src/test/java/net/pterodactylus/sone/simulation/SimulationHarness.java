@@ -0,0 +1,183 @@
+/*
+ * Sone - SimulationHarness.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.freenet.wot.IdentityManager;
+import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector;
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.MapConfigurationBackend;
+import net.pterodactylus.util.number.Numbers;
+
+/**
+ * Runs a {@link Core}, an {@link IdentityManager}, and the Sone downloader
+ * against a {@link SimulatedWebOfTrust}, a {@link SimulatedPluginConnector},
+ * and a {@link SimulatedFreenetInterface}, and periodically reports the
+ * throughput and latency of the Web of Trust requests, the fetches, and the
+ * inserts. The harness is part of the test sources and is run from the test
+ * classpath; it is not packaged with the plugin.
+ * <p>
+ * All parameters are given as “name=value” arguments:
+ * <dl>
+ * <dt>ownIdentities</dt>
+ * <dd>The number of own identities (default 3)</dd>
+ * <dt>identities</dt>
+ * <dd>The number of other identities (default 2000)</dd>
+ * <dt>trusted</dt>
+ * <dd>The number of identities each own identity trusts (default 1000)</dd>
+ * <dt>wotLatency</dt>
+ * <dd>The mean latency of Web of Trust requests in milliseconds (default
+ * 50)</dd>
+ * <dt>fetchLatency</dt>
+ * <dd>The mean latency of fetches in milliseconds (default 2000)</dd>
+ * <dt>insertLatency</dt>
+ * <dd>The mean latency of inserts in milliseconds (default 5000)</dd>
+ * <dt>failureRate</dt>
+ * <dd>The failure rate of all requests in percent (default 5)</dd>
+ * <dt>updateRate</dt>
+ * <dd>The percentage of identities that publish a new edition per minute
+ * (default 2)</dd>
+ * <dt>posts</dt>
+ * <dd>The number of posts per Sone (default 20)</dd>
+ * <dt>textLength</dt>
+ * <dd>The length of posts and replies (default 200)</dd>
+ * <dt>pollInterval</dt>
+ * <dd>The minimum identity poll interval in seconds (default 10)</dd>
+ * <dt>usk</dt>
+ * <dd>Whether to announce new editions to USK subscribers, too (default
+ * true)</dd>
+ * <dt>duration</dt>
+ * <dd>The duration of the simulation in seconds (default 300)</dd>
+ * <dt>seed</dt>
+ * <dd>The seed for all random number generators (default 1)</dd>
+ * </dl>
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SimulationHarness {
+
+	/** The interval between two reports (in milliseconds). */
+	private static final long REPORT_INTERVAL = 10 * 1000;
+
+	/**
+	 * Runs the simulation.
+	 *
+	 * @param arguments
+	 *            The parameters of the simulation, as “name=value”
+	 */
+	public static void main(String[] arguments) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		for (String argument : arguments) {
+			int equals = argument.indexOf('=');
+			if (equals == -1) {
+				System.err.println("Ignoring invalid argument: " + argument);
+				continue;
+			}
+			parameters.put(argument.substring(0, equals), argument.substring(equals + 1));
+		}
+		int ownIdentityCount = getParameter(parameters, "ownIdentities", 3);
+		int identityCount = getParameter(parameters, "identities", 2000);
+		int trustedIdentityCount = getParameter(parameters, "trusted", 1000);
+		int wotLatency = getParameter(parameters, "wotLatency", 50);
+		int fetchLatency = getParameter(parameters, "fetchLatency", 2000);
+		int insertLatency = getParameter(parameters, "insertLatency", 5000);
+		double failureRate = getParameter(parameters, "failureRate", 5) / 100.0;
+		double updateRate = getParameter(parameters, "updateRate", 2) / 100.0;
+		int postsPerSone = getParameter(parameters, "posts", 20);
+		int textLength = getParameter(parameters, "textLength", 200);
+		int pollInterval = getParameter(parameters, "pollInterval", 10);
+		boolean announceEditions = Boolean.parseBoolean((parameters.get("usk") != null) ? parameters.get("usk") : "true");
+		long duration = getParameter(parameters, "duration", 300) * 1000L;
+		long seed = getParameter(parameters, "seed", 1);
+
+		/* create the simulated environment. */
+		SimulatedWebOfTrust webOfTrust = new SimulatedWebOfTrust(seed, ownIdentityCount, identityCount, trustedIdentityCount);
+		SimulatedPluginConnector pluginConnector = new SimulatedPluginConnector(webOfTrust, new LatencyModel(seed + 1, wotLatency, failureRate));
+		SimulatedFreenetInterface freenetInterface = new SimulatedFreenetInterface(seed + 4, webOfTrust, new LatencyModel(seed + 2, fetchLatency, failureRate), new LatencyModel(seed + 3, insertLatency, failureRate), postsPerSone, textLength);
+
+		/* create Sone. */
+		WebOfTrustConnector webOfTrustConnector = new WebOfTrustConnector(pluginConnector);
+		IdentityManager identityManager = new IdentityManager(webOfTrustConnector);
+		identityManager.setContext("Sone");
+		Core core = new Core(new Configuration(new MapConfigurationBackend()), freenetInterface, identityManager);
+		identityManager.addIdentityListener(core);
+
+		PrintStream out = System.out;
+		out.printf("Simulating %d own identities, %d identities (%d trusted) for %d seconds.%n", ownIdentityCount, identityCount, webOfTrust.getTrustedIdentityCount(), duration / 1000);
+		long startTime = System.currentTimeMillis();
+		core.start();
+		core.getOptions().getIntegerOption("MinimumPollInterval").set(pollInterval);
+		identityManager.start();
+
+		/* publish editions once a second and report periodically. */
+		long nextReportTime = startTime + REPORT_INTERVAL;
+		long publishedEditions = 0;
+		long announcedEditions = 0;
+		while (System.currentTimeMillis() < (startTime + duration)) {
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException ie1) {
+				break;
+			}
+			publishedEditions += webOfTrust.publishEditions(updateRate / 60);
+			if (announceEditions) {
+				announcedEditions += freenetInterface.announceEditions();
+			}
+			if (System.currentTimeMillis() >= nextReportTime) {
+				nextReportTime += REPORT_INTERVAL;
+				long seconds = (System.currentTimeMillis() - startTime) / 1000;
+				out.printf("[%4d s] Sones: %d local, %d remote; editions: %d published, %d announced; poll: %d ms for %d identities, next in %d s; pending WoT requests: %d%n", seconds, core.getLocalSones().size(), core.getRemoteSones().size(), publishedEditions, announcedEditions, identityManager.getLastPollDuration(), identityManager.getLastPollIdentities(), identityManager.getPollInterval() / 1000, webOfTrustConnector.getPendingRequestCount());
+				out.printf("[%4d s] %s; %s; %s; %s%n", seconds, pluginConnector.getStatistics(), freenetInterface.getFetchStatistics(), freenetInterface.getInsertStatistics(), freenetInterface.getUpdateStatistics());
+				long fetches = freenetInterface.getFetchStatistics().getCount();
+				out.printf("[%4d s] Throughput: %.1f fetches/s, %.1f WoT requests/s%n", seconds, (seconds > 0) ? (fetches / (double) seconds) : 0.0, (seconds > 0) ? (pluginConnector.getStatistics().getCount() / (double) seconds) : 0.0);
+			}
+		}
+
+		/* shut everything down. */
+		identityManager.stop();
+		core.stop();
+		pluginConnector.stop();
+		out.println("Simulation finished.");
+		System.exit(0);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the integer value of the parameter with the given name.
+	 *
+	 * @param parameters
+	 *            The parameters
+	 * @param name
+	 *            The name of the parameter
+	 * @param defaultValue
+	 *            The value to return if the parameter is not set or not a
+	 *            number
+	 * @return The value of the parameter
+	 */
+	private static int getParameter(Map<String, String> parameters, String name, int defaultValue) {
+		return Numbers.safeParseInteger(parameters.get(name), defaultValue);
+	}
+
+}
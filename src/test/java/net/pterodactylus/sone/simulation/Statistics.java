@@ -0,0 +1,132 @@
+/*
+ * Sone - Statistics.java - Copyright © 2010 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+/**
+ * Collects the number, the failures, and the durations of simulated
+ * operations.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class Statistics {
+
+	/** The name of the operation. */
+	private final String name;
+
+	/** The number of successful operations. */
+	/* synchronize access on this. */
+	private long count;
+
+	/** The number of failed operations. */
+	/* synchronize access on this. */
+	private long failures;
+
+	/** The total duration of all successful operations. */
+	/* synchronize access on this. */
+	private long totalDuration;
+
+	/** The longest duration of a successful operation. */
+	/* synchronize access on this. */
+	private long maxDuration;
+
+	/**
+	 * Creates new statistics.
+	 *
+	 * @param name
+	 *            The name of the operation
+	 */
+	public Statistics(String name) {
+		this.name = name;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of successful operations.
+	 *
+	 * @return The number of successful operations
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of failed operations.
+	 *
+	 * @return The number of failed operations
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Returns the average duration of the successful operations.
+	 *
+	 * @return The average duration (in milliseconds)
+	 */
+	public synchronized long getAverageDuration() {
+		return (count == 0) ? 0 : (totalDuration / count);
+	}
+
+	/**
+	 * Returns the longest duration of a successful operation.
+	 *
+	 * @return The longest duration (in milliseconds)
+	 */
+	public synchronized long getMaxDuration() {
+		return maxDuration;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Records a successful operation.
+	 *
+	 * @param duration
+	 *            The duration of the operation (in milliseconds)
+	 */
+	public synchronized void recordSuccess(long duration) {
+		++count;
+		totalDuration += duration;
+		maxDuration = Math.max(maxDuration, duration);
+	}
+
+	/**
+	 * Records a failed operation.
+	 */
+	public synchronized void recordFailure() {
+		++failures;
+	}
+
+	//
+	// OBJECT METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("%s: %d ok, %d failed, %d ms avg, %d ms max", name, count, failures, getAverageDuration(), maxDuration);
+	}
+
+}